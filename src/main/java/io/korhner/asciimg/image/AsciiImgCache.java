@@ -1,6 +1,8 @@
 package io.korhner.asciimg.image;
 
+import io.korhner.asciimg.image.matrix.ByteGrayscaleMatrix;
 import io.korhner.asciimg.image.matrix.GrayscaleMatrix;
+import io.korhner.asciimg.image.matrix.GrayscaleStatistics;
 
 import java.awt.Color;
 import java.awt.Dimension;
@@ -12,14 +14,28 @@ import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.font.TextLayout;
 import java.awt.image.BufferedImage;
-import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 
 /**
- * Character cache that keeps a map of precalculated pixel data of each
- * character that is eligible for ascii art.
+ * Character cache that keeps precalculated pixel data of each character that
+ * is eligible for ascii art. Pixel data of all characters is packed back to
+ * back in a single array, so characters can be addressed by an integer index.
+ * Pixel statistics of each character are calculated once when the cache is
+ * built.
+ * 
+ * Characters are also kept at lower resolutions in a pyramid. Level 0 is the
+ * full resolution and each next level halves the width and height, so
+ * characters can be ranked cheaply at a coarse level before comparing the
+ * best candidates at full resolution.
+ * 
+ * Pixels are also packed as 8-bit gray levels, for strategies that match with
+ * integer arithmetic.
+ * 
+ * A lookup table maps each of the 256 gray levels to the character with the
+ * closest mean pixel value, for matching by brightness alone.
  */
 public class AsciiImgCache implements
 		Iterable<Entry<Character, GrayscaleMatrix>> {
@@ -86,7 +102,7 @@ public class AsciiImgCache implements
 		Map<Character, GrayscaleMatrix> imageCache = createCharacterImages(
 				font, maxCharacterImageSize, characters);
 
-		return new AsciiImgCache(maxCharacterImageSize, imageCache, characters);
+		return new AsciiImgCache(maxCharacterImageSize, imageCache);
 
 	}
 
@@ -112,7 +128,7 @@ public class AsciiImgCache implements
 		graphics.setFont(font);
 		FontMetrics fm = graphics.getFontMetrics();
 
-		Map<Character, GrayscaleMatrix> imageCache = new HashMap<>();
+		Map<Character, GrayscaleMatrix> imageCache = new LinkedHashMap<>();
 
 		for (int i = 0; i < characters.length; i++) {
 			String character = Character.toString(characters[i]);
@@ -140,6 +156,12 @@ public class AsciiImgCache implements
 	/** A map of characters to their bitmaps. */
 	protected final Map<Character, GrayscaleMatrix> imageCache;
 
+	/** Number of entries in the luminance lookup table. */
+	private static final int LUMINANCE_LEVELS = 256;
+
+	/** Number of pyramid levels, including the full resolution. */
+	public static final int PYRAMID_LEVELS = 3;
+
 	/** Some empirically chosen characters that give good results. */
 	private static final char[] defaultCharacters = "$@B%8&WM#*oahkbdpqwmZO0QLCJUYXzcvunxrjft/\\|()1{}[]?-_+~<>i!lI;:,\"^`'. "
 			.toCharArray();
@@ -147,6 +169,36 @@ public class AsciiImgCache implements
 	/** Dimension of character image data. */
 	private final Dimension characterImageSize;
 
+	/** Characters in index order. */
+	private final char[] characters;
+
+	/** Bitmaps of characters in index order. */
+	private final GrayscaleMatrix[] characterImages;
+
+	/** Pixel data of all characters in index order, packed back to back. */
+	private final float[] characterData;
+
+	/** Pixel data of all characters as 8-bit gray levels, in index order. */
+	private final byte[] characterByteData;
+
+	/** Pixel data of all characters as opaque ARGB pixels, in index order. */
+	private final int[] characterArgbData;
+
+	/** Number of pixels in a single character image. */
+	private final int characterPixelCount;
+
+	/** Pixel statistics of characters in index order. */
+	private final GrayscaleStatistics[] characterStatistics;
+
+	/** Packed pixel data of all characters at each pyramid level. */
+	private final float[][] pyramidData;
+
+	/** Character image dimensions at each pyramid level. */
+	private final Dimension[] pyramidSizes;
+
+	/** Index of the character with the closest mean for each gray level. */
+	private final int[] luminanceLookupTable;
+
 	/**
 	 * Instantiates a new ascii img cache.
 	 *
@@ -156,10 +208,178 @@ public class AsciiImgCache implements
 	 *            the image cache
 	 */
 	private AsciiImgCache(final Dimension characterImageSize,
-			final Map<Character, GrayscaleMatrix> imageCache,
-			final char[] characters) {
+			final Map<Character, GrayscaleMatrix> imageCache) {
 		this.characterImageSize = characterImageSize;
 		this.imageCache = imageCache;
+		this.characterPixelCount = characterImageSize.width
+				* characterImageSize.height;
+
+		// pack character bitmaps into a single array
+		this.characters = new char[imageCache.size()];
+		this.characterImages = new GrayscaleMatrix[imageCache.size()];
+		this.characterData = new float[imageCache.size()
+				* this.characterPixelCount];
+		this.characterByteData = new byte[this.characterData.length];
+		this.characterArgbData = new int[this.characterData.length];
+		this.characterStatistics = new GrayscaleStatistics[imageCache.size()];
+
+		int index = 0;
+		for (Entry<Character, GrayscaleMatrix> entry : imageCache.entrySet()) {
+			this.characters[index] = entry.getKey();
+			this.characterImages[index] = entry.getValue();
+			System.arraycopy(entry.getValue().getData(), 0,
+					this.characterData, getCharacterOffset(index),
+					this.characterPixelCount);
+			System.arraycopy(
+					ByteGrayscaleMatrix.createFromMatrix(entry.getValue())
+							.getData(), 0, this.characterByteData,
+					getCharacterOffset(index), this.characterPixelCount);
+			this.characterStatistics[index] = GrayscaleStatistics
+					.calculate(entry.getValue());
+			index++;
+		}
+
+		// render characters once, so they can be copied to images row by row
+		for (int i = 0; i < this.characterData.length; i++) {
+			int component = (int) this.characterData[i];
+			this.characterArgbData[i] = 0xFF000000 | (component << 16)
+					| (component << 8) | component;
+		}
+
+		// downsample each level from the previous one
+		this.pyramidData = new float[PYRAMID_LEVELS][];
+		this.pyramidSizes = new Dimension[PYRAMID_LEVELS];
+		this.pyramidData[0] = this.characterData;
+		this.pyramidSizes[0] = characterImageSize;
+
+		GrayscaleMatrix[] levelImages = this.characterImages;
+		for (int level = 1; level < PYRAMID_LEVELS; level++) {
+			GrayscaleMatrix[] downsampled = new GrayscaleMatrix[levelImages.length];
+			for (int i = 0; i < levelImages.length; i++) {
+				downsampled[i] = GrayscaleMatrix
+						.createDownsampled(levelImages[i]);
+			}
+
+			this.pyramidSizes[level] = new Dimension(
+					(this.pyramidSizes[level - 1].width + 1) / 2,
+					(this.pyramidSizes[level - 1].height + 1) / 2);
+			int levelPixelCount = getPyramidPixelCount(level);
+			this.pyramidData[level] = new float[downsampled.length
+					* levelPixelCount];
+			for (int i = 0; i < downsampled.length; i++) {
+				System.arraycopy(downsampled[i].getData(), 0,
+						this.pyramidData[level], i * levelPixelCount,
+						levelPixelCount);
+			}
+
+			levelImages = downsampled;
+		}
+
+		this.luminanceLookupTable = new int[LUMINANCE_LEVELS];
+		for (int i = 0; i < LUMINANCE_LEVELS; i++) {
+			this.luminanceLookupTable[i] = findCharacterWithClosestMean(i);
+		}
+	}
+
+	/**
+	 * Finds the character whose mean pixel value is closest to the given
+	 * luminance rounded to a whole gray level, in constant time.
+	 *
+	 * @param luminance
+	 *            luminance between 0.0f and 255.0f
+	 * @return index of the closest character
+	 */
+	public int findCharacterByLuminance(final float luminance) {
+		int level = Math.round(luminance);
+		if (level < 0) {
+			level = 0;
+		} else if (level >= LUMINANCE_LEVELS) {
+			level = LUMINANCE_LEVELS - 1;
+		}
+		return this.luminanceLookupTable[level];
+	}
+
+	/**
+	 * Finds the character whose mean pixel value is closest to the given mean.
+	 *
+	 * @param mean
+	 *            mean pixel value
+	 * @return index of the closest character
+	 */
+	public int findCharacterWithClosestMean(final float mean) {
+		int closest = 0;
+		float minDistance = Float.MAX_VALUE;
+		for (int i = 0; i < this.characterStatistics.length; i++) {
+			float distance = Math.abs(this.characterStatistics[i].getMean()
+					- mean);
+			if (distance < minDistance) {
+				minDistance = distance;
+				closest = i;
+			}
+		}
+		return closest;
+	}
+
+	/**
+	 * Gets the character at a specific index.
+	 *
+	 * @param index
+	 *            character index
+	 * @return the character
+	 */
+	public char getCharacter(final int index) {
+		return this.characters[index];
+	}
+
+	/**
+	 * Gets the number of characters in the cache.
+	 *
+	 * @return the number of characters
+	 */
+	public int getCharacterCount() {
+		return this.characters.length;
+	}
+
+	/**
+	 * Gets a reference to packed pixel data of all characters as opaque gray
+	 * pixels in the format of {@link BufferedImage#TYPE_INT_ARGB}. Pixels of
+	 * the character at index i start at {@link #getCharacterOffset(int)}.
+	 *
+	 * @return packed ARGB character pixel array
+	 */
+	public int[] getCharacterArgbData() {
+		return this.characterArgbData;
+	}
+
+	/**
+	 * Gets a reference to packed 8-bit pixel data of all characters. Pixels of
+	 * the character at index i start at {@link #getCharacterOffset(int)}.
+	 *
+	 * @return packed 8-bit character pixel array
+	 */
+	public byte[] getCharacterByteData() {
+		return this.characterByteData;
+	}
+
+	/**
+	 * Gets a reference to packed pixel data of all characters. Pixels of the
+	 * character at index i start at {@link #getCharacterOffset(int)}.
+	 *
+	 * @return packed character pixel array
+	 */
+	public float[] getCharacterData() {
+		return this.characterData;
+	}
+
+	/**
+	 * Gets the bitmap of the character at a specific index.
+	 *
+	 * @param index
+	 *            character index
+	 * @return the character bitmap
+	 */
+	public GrayscaleMatrix getCharacterImage(final int index) {
+		return this.characterImages[index];
 	}
 
 	/**
@@ -171,6 +391,87 @@ public class AsciiImgCache implements
 		return characterImageSize;
 	}
 
+	/**
+	 * Gets the offset of the character pixels in the packed pixel array.
+	 *
+	 * @param index
+	 *            character index
+	 * @return offset of the first pixel of the character
+	 */
+	public int getCharacterOffset(final int index) {
+		return index * this.characterPixelCount;
+	}
+
+	/**
+	 * Gets the pixel statistics of the character at a specific index.
+	 *
+	 * @param index
+	 *            character index
+	 * @return the character statistics
+	 */
+	public GrayscaleStatistics getCharacterStatistics(final int index) {
+		return this.characterStatistics[index];
+	}
+
+	/**
+	 * Gets the number of pixels in a single character image.
+	 *
+	 * @return the number of pixels
+	 */
+	public int getCharacterPixelCount() {
+		return this.characterPixelCount;
+	}
+
+	/**
+	 * Gets a reference to packed pixel data of all characters at a pyramid
+	 * level. Pixels of the character at index i start at
+	 * {@link #getPyramidOffset(int, int)}.
+	 *
+	 * @param level
+	 *            pyramid level, 0 being the full resolution
+	 * @return packed character pixel array of the level
+	 */
+	public float[] getPyramidData(final int level) {
+		return this.pyramidData[level];
+	}
+
+	/**
+	 * Gets the offset of the character pixels in the packed pixel array of a
+	 * pyramid level.
+	 *
+	 * @param index
+	 *            character index
+	 * @param level
+	 *            pyramid level, 0 being the full resolution
+	 * @return offset of the first pixel of the character
+	 */
+	public int getPyramidOffset(final int index, final int level) {
+		return index * getPyramidPixelCount(level);
+	}
+
+	/**
+	 * Gets the number of pixels in a single character image at a pyramid
+	 * level.
+	 *
+	 * @param level
+	 *            pyramid level, 0 being the full resolution
+	 * @return the number of pixels
+	 */
+	public int getPyramidPixelCount(final int level) {
+		return this.pyramidSizes[level].width * this.pyramidSizes[level].height;
+	}
+
+	/**
+	 * Gets the character image dimensions at a pyramid level.
+	 *
+	 * @param level
+	 *            pyramid level, 0 being the full resolution
+	 * @return character image dimensions of the level
+	 */
+	public Dimension getPyramidSize(final int level) {
+		return this.pyramidSizes[level];
+	}
+
 	/**
 	 * @see java.lang.Iterable#iterator()
 	 */
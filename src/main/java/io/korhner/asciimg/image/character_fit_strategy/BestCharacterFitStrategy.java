@@ -1,15 +1,25 @@
 package io.korhner.asciimg.image.character_fit_strategy;
 
+import io.korhner.asciimg.image.AsciiImgCache;
 import io.korhner.asciimg.image.matrix.GrayscaleMatrix;
+import io.korhner.asciimg.image.matrix.GrayscaleStatistics;
 
 /**
  * Encapsulates the algorith for choosing best fit character.
+ * 
+ * The converter asks the strategy for the best fit of a whole tile through
+ * {@link #findBestFit(AsciiImgCache, GrayscaleMatrix)}, so a strategy can
+ * hoist per tile work out of the character loop. Default implementations
+ * adapt strategies that only implement the single pair method.
  */
 public interface BestCharacterFitStrategy {
 
 	/**
 	 * Returns the error between the character and tile matrices. The character
 	 * with minimun error wins.
+	 * 
+	 * When called by the default implementations, neither matrix is a view, so
+	 * the pixel array of each holds exactly its pixels.
 	 *
 	 * @param character
 	 *            the character
@@ -20,4 +30,115 @@ public interface BestCharacterFitStrategy {
 	 */
 	float calculateError(final GrayscaleMatrix character,
 			final GrayscaleMatrix tile);
+
+	/**
+	 * Returns the error between the character at a specific index of the
+	 * character cache and the tile. Override this to read character pixels
+	 * directly from the packed cache data.
+	 * 
+	 * The tile may be a view, see {@link GrayscaleMatrix#isView()}. The
+	 * default implementation copies a view to a matrix of its own, since
+	 * strategies that only implement
+	 * {@link #calculateError(GrayscaleMatrix, GrayscaleMatrix)} may read its
+	 * pixel array as is.
+	 *
+	 * @param characterCache
+	 *            the character cache
+	 * @param characterIndex
+	 *            index of the character in the cache
+	 * @param tile
+	 *            the tile
+	 * @return error. Less values mean better fit. Least value character will be
+	 *         chosen as best fit.
+	 */
+	default float calculateError(final AsciiImgCache characterCache,
+			final int characterIndex, final GrayscaleMatrix tile) {
+		final GrayscaleMatrix compactTile = tile.isView() ? GrayscaleMatrix
+				.createFromRegion(tile, tile.getWidth(), tile.getHeight(), 0, 0)
+				: tile;
+		return calculateError(characterCache.getCharacterImage(characterIndex),
+				compactTile);
+	}
+
+	/**
+	 * Returns the error between the character at a specific index of the
+	 * character cache and the tile, allowing the calculation to stop early
+	 * once the error is known to be greater than the bound. If it stops early,
+	 * any value greater than the bound may be returned. Override this for
+	 * metrics whose partial error can be bounded while scanning the tile.
+	 *
+	 * @param characterCache
+	 *            the character cache
+	 * @param characterIndex
+	 *            index of the character in the cache
+	 * @param tile
+	 *            the tile
+	 * @param bound
+	 *            least error found so far for the tile
+	 * @return error, or any value greater than the bound if the character can
+	 *         not be a better fit
+	 */
+	default float calculateError(final AsciiImgCache characterCache,
+			final int characterIndex, final GrayscaleMatrix tile,
+			final float bound) {
+		return calculateError(characterCache, characterIndex, tile);
+	}
+
+	/**
+	 * Calculates the error of every character in the cache against the tile.
+	 *
+	 * @param characterCache
+	 *            the character cache
+	 * @param tile
+	 *            the tile
+	 * @param errors
+	 *            array filled with the error of each character, by cache
+	 *            index. Must hold at least as many elements as there are
+	 *            characters.
+	 */
+	default void calculateErrors(final AsciiImgCache characterCache,
+			final GrayscaleMatrix tile, final float[] errors) {
+		final int characterCount = characterCache.getCharacterCount();
+		for (int i = 0; i < characterCount; i++) {
+			errors[i] = calculateError(characterCache, i, tile);
+		}
+	}
+
+	/**
+	 * Finds the character with the least error against the tile. On equal
+	 * error the lower cache index wins.
+	 * 
+	 * The default compares the character of the closest brightness first, so
+	 * the bounded error calculation of the rest can stop early.
+	 *
+	 * @param characterCache
+	 *            the character cache
+	 * @param tile
+	 *            the tile
+	 * @return cache index of the best fit character
+	 */
+	default int findBestFit(final AsciiImgCache characterCache,
+			final GrayscaleMatrix tile) {
+		final int characterCount = characterCache.getCharacterCount();
+
+		int bestFit = characterCache.findCharacterByLuminance(GrayscaleStatistics
+				.calculateMean(tile));
+		float minError = calculateError(characterCache, bestFit, tile,
+				Float.MAX_VALUE);
+
+		for (int i = 0; i < characterCount; i++) {
+			if (i == bestFit) {
+				continue;
+			}
+
+			float error = calculateError(characterCache, i, tile, minError);
+
+			if (error < minError || (error == minError && i < bestFit)) {
+				minError = error;
+				bestFit = i;
+			}
+		}
+
+		return bestFit;
+	}
 }
@@ -0,0 +1,78 @@
+package io.korhner.asciimg.image.character_fit_strategy;
+
+import io.korhner.asciimg.image.AsciiImgCache;
+import io.korhner.asciimg.image.matrix.ByteGrayscaleMatrix;
+
+/**
+ * A character fit strategy that can compare 8-bit tiles to the 8-bit
+ * character data of the cache with integer arithmetic. The converter uses
+ * 8-bit tiles for such strategies, so it never creates a float copy of the
+ * source image.
+ */
+public interface ByteCharacterFitStrategy extends BestCharacterFitStrategy {
+
+	/**
+	 * Returns the error between the character at a specific index of the
+	 * character cache and the 8-bit tile, allowing the calculation to stop
+	 * early once the error is known to be greater than the bound.
+	 *
+	 * @param characterCache
+	 *            the character cache
+	 * @param characterIndex
+	 *            index of the character in the cache
+	 * @param tile
+	 *            the tile
+	 * @param bound
+	 *            least error found so far for the tile
+	 * @return error, or any value greater than the bound if the character can
+	 *         not be a better fit
+	 */
+	long calculateError(final AsciiImgCache characterCache,
+			final int characterIndex, final ByteGrayscaleMatrix tile,
+			final long bound);
+
+	/**
+	 * Finds the character with the least error against the 8-bit tile. On
+	 * equal error the lower cache index wins. The character of the closest
+	 * brightness is compared first, so the bound is tight from the start.
+	 *
+	 * @param characterCache
+	 *            the character cache
+	 * @param tile
+	 *            the tile
+	 * @return cache index of the best fit character
+	 */
+	default int findBestFit(final AsciiImgCache characterCache,
+			final ByteGrayscaleMatrix tile) {
+		final byte[] data = tile.getData();
+		final int characterCount = characterCache.getCharacterCount();
+
+		int sum = 0;
+		for (int y = 0; y < tile.getHeight(); y++) {
+			int rowStart = tile.getIndex(0, y);
+			for (int i = rowStart; i < rowStart + tile.getWidth(); i++) {
+				sum += data[i] & 0xFF;
+			}
+		}
+
+		int bestFit = characterCache.findCharacterByLuminance((float) sum
+				/ (tile.getWidth() * tile.getHeight()));
+		long minError = calculateError(characterCache, bestFit, tile,
+				Long.MAX_VALUE);
+
+		for (int i = 0; i < characterCount; i++) {
+			if (i == bestFit) {
+				continue;
+			}
+
+			long error = calculateError(characterCache, i, tile, minError);
+
+			if (error < minError || (error == minError && i < bestFit)) {
+				minError = error;
+				bestFit = i;
+			}
+		}
+
+		return bestFit;
+	}
+}
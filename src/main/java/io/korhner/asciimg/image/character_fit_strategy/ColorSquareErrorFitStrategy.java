@@ -1,25 +1,232 @@
 package io.korhner.asciimg.image.character_fit_strategy;
 
+import io.korhner.asciimg.image.AsciiImgCache;
 import io.korhner.asciimg.image.matrix.GrayscaleMatrix;
+import io.korhner.asciimg.image.matrix.GrayscaleStatistics;
+import io.korhner.asciimg.utils.FloatKernels;
 
 /**
  * Calculates squared mean error between each pixel.
+ * 
+ * When character statistics are available the error is expanded as
+ * (sum(c^2) + sum(t^2) - 2 * sum(c * t)) / n, so only the dot product has to
+ * be calculated per character. The expanded form is equal to the direct form
+ * up to float rounding.
+ * 
+ * When a bound is given, the direct form is used instead and the calculation
+ * stops at the end of the first row at which the partial error exceeds the
+ * bound. The partial error never decreases, so this does not change the
+ * chosen character.
  */
-public class ColorSquareErrorFitStrategy implements BestCharacterFitStrategy {
+public class ColorSquareErrorFitStrategy implements
+		StatisticalCharacterFitStrategy {
 
 	/**
 	 * @see io.korhner.asciimg.image.character_fit_strategy.BestCharacterFitStrategy#calculateError(io.korhner.asciimg.image.matrix.GrayscaleMatrix, io.korhner.asciimg.image.matrix.GrayscaleMatrix)
 	 */
 	@Override
 	public float calculateError(GrayscaleMatrix character, GrayscaleMatrix tile) {
+		final int length = character.getWidth() * character.getHeight();
+
+		float error = FloatKernels.squaredDistance(character.getData(),
+				character.getOffset(), character.getRowStride(),
+				tile.getData(), tile.getOffset(), tile.getRowStride(),
+				character.getWidth(), character.getHeight());
+
+		return error / length;
+
+	}
+
+	/**
+	 * @see io.korhner.asciimg.image.character_fit_strategy.BestCharacterFitStrategy#calculateError(io.korhner.asciimg.image.AsciiImgCache,
+	 *      int, io.korhner.asciimg.image.matrix.GrayscaleMatrix, float)
+	 */
+	@Override
+	public float calculateError(final AsciiImgCache characterCache,
+			final int characterIndex, final GrayscaleMatrix tile,
+			final float bound) {
+		return calculateBoundedError(characterCache.getCharacterData(),
+				characterCache.getCharacterOffset(characterIndex),
+				tile.getData(), tile.getOffset(), tile.getRowStride(),
+				characterCache.getCharacterPixelCount(),
+				characterCache.getCharacterImageSize().width, bound);
+	}
+
+	/**
+	 * Calculates the error with the direct form, stopping at the end of the
+	 * first row at which the error exceeds the bound.
+	 *
+	 * @param characterData
+	 *            packed character pixels
+	 * @param offset
+	 *            offset of the character pixels
+	 * @param tileData
+	 *            tile pixels
+	 * @param tileOffset
+	 *            offset of the tile pixels
+	 * @param tileRowStride
+	 *            distance between tile rows
+	 * @param length
+	 *            number of pixels
+	 * @param rowLength
+	 *            number of pixels in a row
+	 * @param bound
+	 *            least error found so far for the tile
+	 * @return error, or positive infinity if the error is greater than the
+	 *         bound
+	 */
+	private static float calculateBoundedError(final float[] characterData,
+			final int offset, final float[] tileData, final int tileOffset,
+			final int tileRowStride, final int length, final int rowLength,
+			final float bound) {
 		float error = 0;
-		for (int i = 0; i < character.getData().length; i++) {
-			error += (character.getData()[i] - tile.getData()[i])
-					* (character.getData()[i] - tile.getData()[i]);
+		int tileRowStart = tileOffset;
+		for (int rowStart = 0; rowStart < length; rowStart += rowLength) {
+			error += FloatKernels.squaredDistance(characterData, offset
+					+ rowStart, tileData, tileRowStart, rowLength);
+			tileRowStart += tileRowStride;
+
+			// the rest of the rows can only increase the error. The partial
+			// sum is averaged exactly like the final error, so a character
+			// whose error equals the bound is never pruned and still reaches
+			// the tie rule. A pruned character reports an error no character
+			// can reach
+			if (error / length > bound) {
+				return Float.POSITIVE_INFINITY;
+			}
 		}
 
-		return error / character.getData().length;
+		return error / length;
+	}
+
+	/**
+	 * @see io.korhner.asciimg.image.character_fit_strategy.StatisticalCharacterFitStrategy#calculateError(io.korhner.asciimg.image.AsciiImgCache,
+	 *      int, io.korhner.asciimg.image.matrix.GrayscaleMatrix,
+	 *      io.korhner.asciimg.image.matrix.GrayscaleStatistics)
+	 */
+	@Override
+	public float calculateError(final AsciiImgCache characterCache,
+			final int characterIndex, final GrayscaleMatrix tile,
+			final GrayscaleStatistics tileStatistics) {
+		final GrayscaleStatistics characterStatistics = characterCache
+				.getCharacterStatistics(characterIndex);
+		final int length = characterCache.getCharacterPixelCount();
+		final int rowLength = characterCache.getCharacterImageSize().width;
+
+		float dotProduct = FloatKernels.dotProduct(
+				characterCache.getCharacterData(),
+				characterCache.getCharacterOffset(characterIndex), rowLength,
+				tile.getData(), tile.getOffset(), tile.getRowStride(),
+				rowLength, length / rowLength);
+
+		float error = characterStatistics.getSumOfSquares()
+				+ tileStatistics.getSumOfSquares() - 2 * dotProduct;
+
+		// rounding can make a perfect fit slightly negative
+		return Math.max(0, error) / length;
+	}
+
+	/**
+	 * Uses the expanded form while there is no bound yet, and the direct form
+	 * with early abandonment afterwards.
+	 *
+	 * @see io.korhner.asciimg.image.character_fit_strategy.StatisticalCharacterFitStrategy#calculateError(io.korhner.asciimg.image.AsciiImgCache,
+	 *      int, io.korhner.asciimg.image.matrix.GrayscaleMatrix,
+	 *      io.korhner.asciimg.image.matrix.GrayscaleStatistics, float)
+	 */
+	@Override
+	public float calculateError(final AsciiImgCache characterCache,
+			final int characterIndex, final GrayscaleMatrix tile,
+			final GrayscaleStatistics tileStatistics, final float bound) {
+		if (bound == Float.MAX_VALUE) {
+			return calculateError(characterCache, characterIndex, tile,
+					tileStatistics);
+		}
+		return calculateError(characterCache, characterIndex, tile, bound);
+	}
+
+	/**
+	 * Searches all characters in a single loop over the packed cache data,
+	 * with the same order and bounds as the default implementation.
+	 *
+	 * @see io.korhner.asciimg.image.character_fit_strategy.StatisticalCharacterFitStrategy#findBestFit(io.korhner.asciimg.image.AsciiImgCache,
+	 *      io.korhner.asciimg.image.matrix.GrayscaleMatrix)
+	 */
+	@Override
+	public int findBestFit(final AsciiImgCache characterCache,
+			final GrayscaleMatrix tile) {
+		return findBestFit(characterCache, tile,
+				GrayscaleStatistics.calculateMean(tile));
+	}
+
+	/**
+	 * Searches all characters in a single loop over the packed cache data.
+	 * Only the tile mean is used, to choose the first character compared.
+	 *
+	 * @see io.korhner.asciimg.image.character_fit_strategy.StatisticalCharacterFitStrategy#findBestFit(io.korhner.asciimg.image.AsciiImgCache,
+	 *      io.korhner.asciimg.image.matrix.GrayscaleMatrix,
+	 *      io.korhner.asciimg.image.matrix.GrayscaleStatistics)
+	 */
+	@Override
+	public int findBestFit(final AsciiImgCache characterCache,
+			final GrayscaleMatrix tile, final GrayscaleStatistics tileStatistics) {
+		return findBestFit(characterCache, tile, tileStatistics.getMean());
+	}
+
+	/**
+	 * The square error only needs the tile mean, which a single pass over the
+	 * tile finds at a fraction of the cost of the search.
+	 *
+	 * @see io.korhner.asciimg.image.character_fit_strategy.StatisticalCharacterFitStrategy#usesTileVariance()
+	 */
+	@Override
+	public boolean usesTileVariance() {
+		return false;
+	}
+
+	/**
+	 * Searches all characters, starting with the character closest to the
+	 * tile mean.
+	 *
+	 * @param characterCache
+	 *            the character cache
+	 * @param tile
+	 *            the tile
+	 * @param tileMean
+	 *            mean pixel value of the tile
+	 * @return cache index of the best fit character
+	 */
+	private static int findBestFit(final AsciiImgCache characterCache,
+			final GrayscaleMatrix tile, final float tileMean) {
+		final float[] characterData = characterCache.getCharacterData();
+		final float[] tileData = tile.getData();
+		final int tileOffset = tile.getOffset();
+		final int tileRowStride = tile.getRowStride();
+		final int length = characterCache.getCharacterPixelCount();
+		final int rowLength = characterCache.getCharacterImageSize().width;
+		final int characterCount = characterCache.getCharacterCount();
+
+		int bestFit = characterCache.findCharacterByLuminance(tileMean);
+		float minError = calculateBoundedError(characterData, bestFit * length,
+				tileData, tileOffset, tileRowStride, length, rowLength,
+				Float.MAX_VALUE);
+
+		for (int i = 0; i < characterCount; i++) {
+			if (i == bestFit) {
+				continue;
+			}
+
+			float error = calculateBoundedError(characterData, i * length,
+					tileData, tileOffset, tileRowStride, length, rowLength,
+					minError);
+
+			if (error < minError || (error == minError && i < bestFit)) {
+				minError = error;
+				bestFit = i;
+			}
+		}
 
+		return bestFit;
 	}
 
 }
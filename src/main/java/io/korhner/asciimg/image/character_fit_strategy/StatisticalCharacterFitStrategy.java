@@ -0,0 +1,178 @@
+package io.korhner.asciimg.image.character_fit_strategy;
+
+import io.korhner.asciimg.image.AsciiImgCache;
+import io.korhner.asciimg.image.matrix.GrayscaleMatrix;
+import io.korhner.asciimg.image.matrix.GrayscaleStatistics;
+
+/**
+ * A character fit strategy whose error can be expressed through precomputed
+ * character statistics, tile statistics and the dot product of character and
+ * tile pixels. Tile statistics are calculated once per tile, so the per
+ * character work is a single multiply-add pass.
+ */
+public interface StatisticalCharacterFitStrategy extends
+		BestCharacterFitStrategy {
+
+	/**
+	 * Returns the error between the character at a specific index of the
+	 * character cache and the tile.
+	 *
+	 * @param characterCache
+	 *            the character cache
+	 * @param characterIndex
+	 *            index of the character in the cache
+	 * @param tile
+	 *            the tile
+	 * @param tileStatistics
+	 *            precalculated statistics of the tile
+	 * @return error. Less values mean better fit. Least value character will be
+	 *         chosen as best fit.
+	 */
+	float calculateError(final AsciiImgCache characterCache,
+			final int characterIndex, final GrayscaleMatrix tile,
+			final GrayscaleStatistics tileStatistics);
+
+	/**
+	 * Returns the error between the character at a specific index of the
+	 * character cache and the tile, allowing the calculation to stop early
+	 * once the error is known to be greater than the bound.
+	 *
+	 * @param characterCache
+	 *            the character cache
+	 * @param characterIndex
+	 *            index of the character in the cache
+	 * @param tile
+	 *            the tile
+	 * @param tileStatistics
+	 *            precalculated statistics of the tile
+	 * @param bound
+	 *            least error found so far for the tile
+	 * @return error, or any value greater than the bound if the character can
+	 *         not be a better fit
+	 * @see BestCharacterFitStrategy#calculateError(AsciiImgCache, int,
+	 *      GrayscaleMatrix, float)
+	 */
+	default float calculateError(final AsciiImgCache characterCache,
+			final int characterIndex, final GrayscaleMatrix tile,
+			final GrayscaleStatistics tileStatistics, final float bound) {
+		return calculateError(characterCache, characterIndex, tile,
+				tileStatistics);
+	}
+
+	/**
+	 * Calculates tile statistics and delegates to
+	 * {@link #calculateError(AsciiImgCache, int, GrayscaleMatrix, GrayscaleStatistics)}
+	 * .
+	 *
+	 * @see io.korhner.asciimg.image.character_fit_strategy.BestCharacterFitStrategy#calculateError(io.korhner.asciimg.image.AsciiImgCache,
+	 *      int, io.korhner.asciimg.image.matrix.GrayscaleMatrix)
+	 */
+	@Override
+	default float calculateError(final AsciiImgCache characterCache,
+			final int characterIndex, final GrayscaleMatrix tile) {
+		return calculateError(characterCache, characterIndex, tile,
+				GrayscaleStatistics.calculate(tile));
+	}
+
+	/**
+	 * Calculates tile statistics once and reuses them for every character.
+	 *
+	 * @see io.korhner.asciimg.image.character_fit_strategy.BestCharacterFitStrategy#calculateErrors(io.korhner.asciimg.image.AsciiImgCache,
+	 *      io.korhner.asciimg.image.matrix.GrayscaleMatrix, float[])
+	 */
+	@Override
+	default void calculateErrors(final AsciiImgCache characterCache,
+			final GrayscaleMatrix tile, final float[] errors) {
+		calculateErrors(characterCache, tile,
+				GrayscaleStatistics.calculate(tile), errors);
+	}
+
+	/**
+	 * Calculates the error of every character in the cache against the tile,
+	 * using precalculated tile statistics.
+	 *
+	 * @param characterCache
+	 *            the character cache
+	 * @param tile
+	 *            the tile
+	 * @param tileStatistics
+	 *            precalculated statistics of the tile
+	 * @param errors
+	 *            array to store the error of each character to, at least as
+	 *            long as the number of characters in the cache
+	 */
+	default void calculateErrors(final AsciiImgCache characterCache,
+			final GrayscaleMatrix tile,
+			final GrayscaleStatistics tileStatistics, final float[] errors) {
+		final int characterCount = characterCache.getCharacterCount();
+		for (int i = 0; i < characterCount; i++) {
+			errors[i] = calculateError(characterCache, i, tile, tileStatistics);
+		}
+	}
+
+	/**
+	 * Calculates tile statistics once and reuses them for every character.
+	 *
+	 * @see io.korhner.asciimg.image.character_fit_strategy.BestCharacterFitStrategy#findBestFit(io.korhner.asciimg.image.AsciiImgCache,
+	 *      io.korhner.asciimg.image.matrix.GrayscaleMatrix)
+	 */
+	@Override
+	default int findBestFit(final AsciiImgCache characterCache,
+			final GrayscaleMatrix tile) {
+		return findBestFit(characterCache, tile,
+				GrayscaleStatistics.calculate(tile));
+	}
+
+	/**
+	 * Finds the character with the least error against the tile, using
+	 * precalculated tile statistics, for example from a
+	 * {@link io.korhner.asciimg.image.matrix.SummedAreaTable}.
+	 *
+	 * @param characterCache
+	 *            the character cache
+	 * @param tile
+	 *            the tile
+	 * @param tileStatistics
+	 *            precalculated statistics of the tile
+	 * @return cache index of the best fit character
+	 * @see BestCharacterFitStrategy#findBestFit(AsciiImgCache,
+	 *      GrayscaleMatrix)
+	 */
+	default int findBestFit(final AsciiImgCache characterCache,
+			final GrayscaleMatrix tile, final GrayscaleStatistics tileStatistics) {
+		final int characterCount = characterCache.getCharacterCount();
+
+		int bestFit = characterCache.findCharacterByLuminance(tileStatistics
+				.getMean());
+		float minError = calculateError(characterCache, bestFit, tile,
+				tileStatistics, Float.MAX_VALUE);
+
+		for (int i = 0; i < characterCount; i++) {
+			if (i == bestFit) {
+				continue;
+			}
+
+			float error = calculateError(characterCache, i, tile,
+					tileStatistics, minError);
+
+			if (error < minError || (error == minError && i < bestFit)) {
+				minError = error;
+				bestFit = i;
+			}
+		}
+
+		return bestFit;
+	}
+
+	/**
+	 * Checks whether matching uses the variance of tiles, or other statistics
+	 * beyond the mean. Converters only build a summed-area table of the source
+	 * image for strategies that do, since the mean alone is cheap to find
+	 * from the tile pixels.
+	 *
+	 * @return true if tile statistics beyond the mean are used
+	 */
+	default boolean usesTileVariance() {
+		return true;
+	}
+}
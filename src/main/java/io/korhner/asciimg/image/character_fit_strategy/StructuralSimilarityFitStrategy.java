@@ -1,11 +1,18 @@
 package io.korhner.asciimg.image.character_fit_strategy;
 
+import io.korhner.asciimg.image.AsciiImgCache;
 import io.korhner.asciimg.image.matrix.GrayscaleMatrix;
+import io.korhner.asciimg.image.matrix.GrayscaleStatistics;
+import io.korhner.asciimg.utils.FloatKernels;
 
 /**
  * Calculates Structural Similarity index (SSIM) between the images.
  * 
  * See http://en.wikipedia.org/wiki/Structural_similarity for more info.
+ * 
+ * The score of a single pixel is at most (2 + C2) / C2, so with a bound the
+ * calculation stops at the end of the first row after which even a perfect
+ * score for the remaining pixels can not bring the error under the bound.
  */
 public class StructuralSimilarityFitStrategy implements
 		BestCharacterFitStrategy {
@@ -16,26 +23,166 @@ public class StructuralSimilarityFitStrategy implements
 
 	@Override
 	public float calculateError(GrayscaleMatrix character, GrayscaleMatrix tile) {
+		final int imgLength = character.getWidth() * character.getHeight();
 
-		float C1 = K1 * L;
-		C1 *= C1;
-		float C2 = K2 * L;
-		C2 *= C2;
+		float score = FloatKernels.structuralSimilarity(character.getData(),
+				character.getOffset(), character.getRowStride(),
+				tile.getData(), tile.getOffset(), tile.getRowStride(),
+				character.getWidth(), character.getHeight(), getC1(), getC2());
+
+		// average and convert score to error
+		return 1 - (score / imgLength);
+	}
+
+	@Override
+	public float calculateError(final AsciiImgCache characterCache,
+			final int characterIndex, final GrayscaleMatrix tile) {
+		final int imgLength = characterCache.getCharacterPixelCount();
+		final int rowLength = characterCache.getCharacterImageSize().width;
+
+		float score = FloatKernels.structuralSimilarity(
+				characterCache.getCharacterData(),
+				characterCache.getCharacterOffset(characterIndex), rowLength,
+				tile.getData(), tile.getOffset(), tile.getRowStride(),
+				rowLength, imgLength / rowLength, getC1(), getC2());
+
+		// average and convert score to error
+		return 1 - (score / imgLength);
+	}
+
+	@Override
+	public float calculateError(final AsciiImgCache characterCache,
+			final int characterIndex, final GrayscaleMatrix tile,
+			final float bound) {
+		return calculateBoundedError(characterCache.getCharacterData(),
+				characterCache.getCharacterOffset(characterIndex),
+				tile.getData(), tile.getOffset(), tile.getRowStride(),
+				characterCache.getCharacterPixelCount(),
+				characterCache.getCharacterImageSize().width, bound, getC1(),
+				getC2());
+	}
 
-		final int imgLength = character.getData().length;
+	/**
+	 * Calculates the error, stopping at the end of the first row after which
+	 * even a perfect score of the remaining pixels can not bring the error
+	 * under the bound.
+	 *
+	 * @param characterData
+	 *            packed character pixels
+	 * @param offset
+	 *            offset of the character pixels
+	 * @param tileData
+	 *            tile pixels
+	 * @param tileOffset
+	 *            offset of the tile pixels
+	 * @param tileRowStride
+	 *            distance between tile rows
+	 * @param imgLength
+	 *            number of pixels
+	 * @param rowLength
+	 *            number of pixels in a row
+	 * @param bound
+	 *            least error found so far for the tile
+	 * @param C1
+	 *            luminance stabilizing constant
+	 * @param C2
+	 *            contrast stabilizing constant
+	 * @return error, or positive infinity if the error is greater than the
+	 *         bound
+	 */
+	private static float calculateBoundedError(final float[] characterData,
+			final int offset, final float[] tileData, final int tileOffset,
+			final int tileRowStride, final int imgLength, final int rowLength,
+			final float bound, final float C1, final float C2) {
+		final float maxPixelScore = (2 + C2) / C2;
+
+		// score needed to get under the bound
+		final float scoreBound = (1 - bound) * imgLength;
 
 		float score = 0f;
-		for (int i = 0; i < imgLength; i++) {
-			float pixelImg1 = character.getData()[i];
-			float pixelImg2 = tile.getData()[i];
+		int tileRowStart = tileOffset;
+		for (int rowStart = 0; rowStart < imgLength; rowStart += rowLength) {
+			score = FloatKernels.structuralSimilarity(score, characterData,
+					offset + rowStart, tileData, tileRowStart, rowLength, C1, C2);
+			tileRowStart += tileRowStride;
 
-			score += (2 * pixelImg1 * pixelImg2 + C1) * (2 + C2)
-					/ (pixelImg1 * pixelImg1 + pixelImg2 * pixelImg2 + C1) / C2;
+			// stop if even the best possible score of the remaining pixels is
+			// not enough. The error of that score could round to the bound
+			// and win a tie, so a pruned character reports an error no
+			// character can reach
+			int remaining = imgLength - rowStart - rowLength;
+			if (score + remaining * maxPixelScore < scoreBound) {
+				return Float.POSITIVE_INFINITY;
+			}
 		}
 
 		// average and convert score to error
 		return 1 - (score / imgLength);
+	}
+
+	/**
+	 * Searches all characters in a single loop over the packed cache data,
+	 * with the same order and bounds as the default implementation.
+	 *
+	 * @see io.korhner.asciimg.image.character_fit_strategy.BestCharacterFitStrategy#findBestFit(io.korhner.asciimg.image.AsciiImgCache,
+	 *      io.korhner.asciimg.image.matrix.GrayscaleMatrix)
+	 */
+	@Override
+	public int findBestFit(final AsciiImgCache characterCache,
+			final GrayscaleMatrix tile) {
+		final float C1 = getC1();
+		final float C2 = getC2();
+
+		final float[] characterData = characterCache.getCharacterData();
+		final float[] tileData = tile.getData();
+		final int tileOffset = tile.getOffset();
+		final int tileRowStride = tile.getRowStride();
+		final int imgLength = characterCache.getCharacterPixelCount();
+		final int rowLength = characterCache.getCharacterImageSize().width;
+		final int characterCount = characterCache.getCharacterCount();
+
+		int bestFit = characterCache.findCharacterByLuminance(GrayscaleStatistics
+				.calculateMean(tile));
+		float minError = calculateBoundedError(characterData, bestFit
+				* imgLength, tileData, tileOffset, tileRowStride, imgLength,
+				rowLength, Float.MAX_VALUE, C1, C2);
+
+		for (int i = 0; i < characterCount; i++) {
+			if (i == bestFit) {
+				continue;
+			}
+
+			float error = calculateBoundedError(characterData, i * imgLength,
+					tileData, tileOffset, tileRowStride, imgLength, rowLength,
+					minError, C1, C2);
 
+			if (error < minError || (error == minError && i < bestFit)) {
+				minError = error;
+				bestFit = i;
+			}
+		}
+
+		return bestFit;
+	}
+
+	/**
+	 * Gets the luminance stabilizing constant.
+	 *
+	 * @return (K1 * L)^2
+	 */
+	private float getC1() {
+		float C1 = K1 * L;
+		return C1 * C1;
+	}
+
+	/**
+	 * Gets the contrast stabilizing constant.
+	 *
+	 * @return (K2 * L)^2
+	 */
+	private float getC2() {
+		float C2 = K2 * L;
+		return C2 * C2;
 	}
 
 }
@@ -0,0 +1,84 @@
+package io.korhner.asciimg.image.character_fit_strategy;
+
+import io.korhner.asciimg.image.AsciiImgCache;
+import io.korhner.asciimg.image.matrix.GrayscaleMatrix;
+import io.korhner.asciimg.image.matrix.GrayscaleStatistics;
+import io.korhner.asciimg.utils.FloatKernels;
+
+/**
+ * Calculates Structural Similarity index (SSIM) between the images, using the
+ * whole tile as a single window. Unlike {@link StructuralSimilarityFitStrategy}
+ * , which compares luminance pixel by pixel, this index only needs means,
+ * variances and the covariance, so it works on precalculated statistics.
+ * 
+ * See http://en.wikipedia.org/wiki/Structural_similarity for more info.
+ */
+public class StructuralSimilarityIndexFitStrategy implements
+		StatisticalCharacterFitStrategy {
+
+	private final float K1 = 0.01f;
+	private final float K2 = 0.03f;
+	private float L = 255f;
+
+	@Override
+	public float calculateError(final GrayscaleMatrix character,
+			final GrayscaleMatrix tile) {
+		float dotProduct = FloatKernels.dotProduct(character.getData(),
+				character.getOffset(), character.getRowStride(),
+				tile.getData(), tile.getOffset(), tile.getRowStride(),
+				character.getWidth(), character.getHeight());
+
+		return calculateError(GrayscaleStatistics.calculate(character),
+				GrayscaleStatistics.calculate(tile), dotProduct);
+	}
+
+	@Override
+	public float calculateError(final AsciiImgCache characterCache,
+			final int characterIndex, final GrayscaleMatrix tile,
+			final GrayscaleStatistics tileStatistics) {
+		final int rowLength = characterCache.getCharacterImageSize().width;
+
+		float dotProduct = FloatKernels.dotProduct(
+				characterCache.getCharacterData(),
+				characterCache.getCharacterOffset(characterIndex), rowLength,
+				tile.getData(), tile.getOffset(), tile.getRowStride(),
+				rowLength, characterCache.getCharacterPixelCount() / rowLength);
+
+		return calculateError(
+				characterCache.getCharacterStatistics(characterIndex),
+				tileStatistics, dotProduct);
+	}
+
+	/**
+	 * Calculates the error from image statistics.
+	 *
+	 * @param characterStatistics
+	 *            the character statistics
+	 * @param tileStatistics
+	 *            the tile statistics
+	 * @param dotProduct
+	 *            sum of products of character and tile pixels
+	 * @return error between 0 and 2. Less values mean better fit.
+	 */
+	private float calculateError(final GrayscaleStatistics characterStatistics,
+			final GrayscaleStatistics tileStatistics, final float dotProduct) {
+		float C1 = K1 * L;
+		C1 *= C1;
+		float C2 = K2 * L;
+		C2 *= C2;
+
+		float meanCharacter = characterStatistics.getMean();
+		float meanTile = tileStatistics.getMean();
+		float covariance = dotProduct / characterStatistics.getPixelCount()
+				- meanCharacter * meanTile;
+
+		float ssim = (2 * meanCharacter * meanTile + C1) * (2 * covariance + C2)
+				/ (meanCharacter * meanCharacter + meanTile * meanTile + C1)
+				/ (characterStatistics.getVariance()
+						+ tileStatistics.getVariance() + C2);
+
+		// convert score to error
+		return 1 - ssim;
+	}
+
+}
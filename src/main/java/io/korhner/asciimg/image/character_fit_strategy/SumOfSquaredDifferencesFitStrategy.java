@@ -0,0 +1,72 @@
+package io.korhner.asciimg.image.character_fit_strategy;
+
+import io.korhner.asciimg.image.AsciiImgCache;
+import io.korhner.asciimg.image.matrix.ByteGrayscaleMatrix;
+import io.korhner.asciimg.image.matrix.GrayscaleMatrix;
+
+/**
+ * Calculates the sum of squared differences (SSD) between each pixel.
+ * It ranks characters like {@link ColorSquareErrorFitStrategy}, up to rounding of
+ * pixels to whole gray levels.
+ * 
+ * On 8-bit tiles the error is calculated with integer arithmetic, stopping at
+ * the end of the first row at which the partial error exceeds the bound. On
+ * float tiles the same sum is calculated in float.
+ */
+public class SumOfSquaredDifferencesFitStrategy implements
+		ByteCharacterFitStrategy {
+
+	@Override
+	public float calculateError(final GrayscaleMatrix character,
+			final GrayscaleMatrix tile) {
+		final float[] characterData = character.getData();
+		final float[] tileData = tile.getData();
+
+		float error = 0;
+		for (int y = 0; y < character.getHeight(); y++) {
+			int characterRowStart = character.getIndex(0, y);
+			int tileRowStart = tile.getIndex(0, y);
+			for (int x = 0; x < character.getWidth(); x++) {
+				float difference = characterData[characterRowStart + x]
+						- tileData[tileRowStart + x];
+				error += difference * difference;
+			}
+		}
+
+		return error;
+	}
+
+	@Override
+	public long calculateError(final AsciiImgCache characterCache,
+			final int characterIndex, final ByteGrayscaleMatrix tile,
+			final long bound) {
+		final byte[] characterData = characterCache.getCharacterByteData();
+		final byte[] tileData = tile.getData();
+		final int offset = characterCache.getCharacterOffset(characterIndex);
+		final int length = characterCache.getCharacterPixelCount();
+		final int rowLength = characterCache.getCharacterImageSize().width;
+
+		final int tileRowStride = tile.getRowStride();
+
+		long error = 0;
+		int tileRowStart = tile.getOffset();
+		for (int rowStart = 0; rowStart < length; rowStart += rowLength) {
+			int rowError = 0;
+			for (int i = 0; i < rowLength; i++) {
+				int difference = (characterData[offset + rowStart + i] & 0xFF)
+						- (tileData[tileRowStart + i] & 0xFF);
+				rowError += difference * difference;
+			}
+			error += rowError;
+			tileRowStart += tileRowStride;
+
+			// the rest of the rows can only increase the error
+			if (error > bound) {
+				return error;
+			}
+		}
+
+		return error;
+	}
+
+}
@@ -0,0 +1,28 @@
+package io.korhner.asciimg.image.character_index;
+
+import io.korhner.asciimg.image.AsciiImgCache;
+import io.korhner.asciimg.image.matrix.GrayscaleMatrix;
+
+/**
+ * A search structure built once per character cache that finds the best fit
+ * character of a tile without comparing it to every character. Used by the
+ * converter in place of a brute force search with the character fit strategy.
+ */
+public interface CharacterIndex {
+
+	/**
+	 * Finds the best fit character for a tile.
+	 *
+	 * @param tile
+	 *            the tile
+	 * @return cache index of the best fit character
+	 */
+	int findBestFit(final GrayscaleMatrix tile);
+
+	/**
+	 * Gets the character cache the index was built for.
+	 *
+	 * @return the character cache
+	 */
+	AsciiImgCache getCharacterCache();
+}
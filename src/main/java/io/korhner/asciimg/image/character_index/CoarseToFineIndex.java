@@ -0,0 +1,170 @@
+package io.korhner.asciimg.image.character_index;
+
+import io.korhner.asciimg.image.AsciiImgCache;
+import io.korhner.asciimg.image.character_fit_strategy.BestCharacterFitStrategy;
+import io.korhner.asciimg.image.matrix.GrayscaleMatrix;
+import io.korhner.asciimg.utils.FloatKernels;
+
+/**
+ * Finds the best fit character in two passes. All characters are first
+ * ranked by squared error against a downsampled tile, using the character
+ * pyramid of the cache. Only the top ranked candidates are then compared to
+ * the full resolution tile with the character fit strategy.
+ * 
+ * At the coarsest level a character has about a sixteenth of the pixels, so
+ * the ranking pass is much cheaper than a full search. The number of
+ * candidates trades exactness for throughput: with as many candidates as
+ * characters the result is the same as a brute force search.
+ */
+public class CoarseToFineIndex implements CharacterIndex {
+
+	/** The character cache. */
+	private final AsciiImgCache characterCache;
+
+	/** Strategy used to compare candidates at full resolution. */
+	private final BestCharacterFitStrategy characterFitStrategy;
+
+	/** Pyramid level used for ranking. */
+	private final int level;
+
+	/** Number of candidates compared at full resolution. */
+	private final int candidateCount;
+
+	/**
+	 * Instantiates a new index that ranks characters at the coarsest pyramid
+	 * level.
+	 *
+	 * @param characterCache
+	 *            the character cache
+	 * @param characterFitStrategy
+	 *            strategy used to compare candidates at full resolution
+	 * @param candidateCount
+	 *            number of candidates compared at full resolution
+	 */
+	public CoarseToFineIndex(final AsciiImgCache characterCache,
+			final BestCharacterFitStrategy characterFitStrategy,
+			final int candidateCount) {
+		this(characterCache, characterFitStrategy,
+				AsciiImgCache.PYRAMID_LEVELS - 1, candidateCount);
+	}
+
+	/**
+	 * Instantiates a new index.
+	 *
+	 * @param characterCache
+	 *            the character cache
+	 * @param characterFitStrategy
+	 *            strategy used to compare candidates at full resolution
+	 * @param level
+	 *            pyramid level used for ranking
+	 * @param candidateCount
+	 *            number of candidates compared at full resolution
+	 */
+	public CoarseToFineIndex(final AsciiImgCache characterCache,
+			final BestCharacterFitStrategy characterFitStrategy,
+			final int level, final int candidateCount) {
+		if (level < 0 || level >= AsciiImgCache.PYRAMID_LEVELS) {
+			throw new IllegalArgumentException("Illegal pyramid level!");
+		}
+		if (candidateCount <= 0) {
+			throw new IllegalArgumentException("Illegal candidate count!");
+		}
+
+		this.characterCache = characterCache;
+		this.characterFitStrategy = characterFitStrategy;
+		this.level = level;
+		this.candidateCount = Math.min(candidateCount,
+				characterCache.getCharacterCount());
+	}
+
+	@Override
+	public int findBestFit(final GrayscaleMatrix tile) {
+		final int[] candidates = rankCandidates(tile);
+
+		// compare candidates at full resolution, best ranked first
+		float minError = Float.MAX_VALUE;
+		int bestFit = -1;
+		for (int candidate : candidates) {
+			float error = this.characterFitStrategy.calculateError(
+					this.characterCache, candidate, tile, minError);
+
+			if (error < minError || (error == minError && candidate < bestFit)) {
+				minError = error;
+				bestFit = candidate;
+			}
+		}
+
+		return bestFit;
+	}
+
+	/**
+	 * Gets the number of candidates compared at full resolution.
+	 *
+	 * @return the candidate count
+	 */
+	public int getCandidateCount() {
+		return this.candidateCount;
+	}
+
+	@Override
+	public AsciiImgCache getCharacterCache() {
+		return this.characterCache;
+	}
+
+	/**
+	 * Gets the pyramid level used for ranking.
+	 *
+	 * @return the pyramid level
+	 */
+	public int getLevel() {
+		return this.level;
+	}
+
+	/**
+	 * Ranks all characters by squared error against the downsampled tile.
+	 *
+	 * @param tile
+	 *            the full resolution tile
+	 * @return cache indexes of the best ranked characters, best first
+	 */
+	private int[] rankCandidates(final GrayscaleMatrix tile) {
+		GrayscaleMatrix coarseTile = tile;
+		for (int i = 0; i < this.level; i++) {
+			coarseTile = GrayscaleMatrix.createDownsampled(coarseTile);
+		}
+
+		final float[] data = this.characterCache.getPyramidData(this.level);
+		final int pixelCount = this.characterCache
+				.getPyramidPixelCount(this.level);
+		final int characterCount = this.characterCache.getCharacterCount();
+
+		// keep the best candidates sorted by distance
+		final int[] candidates = new int[this.candidateCount];
+		final float[] distances = new float[this.candidateCount];
+		int size = 0;
+
+		for (int i = 0; i < characterCount; i++) {
+			float distance = FloatKernels.squaredDistance(data, i * pixelCount,
+					coarseTile.getWidth(), coarseTile.getData(),
+					coarseTile.getOffset(), coarseTile.getRowStride(),
+					coarseTile.getWidth(), coarseTile.getHeight());
+
+			if (size == this.candidateCount
+					&& distance >= distances[size - 1]) {
+				continue;
+			}
+
+			// insert, dropping the worst candidate if full
+			int position = size < this.candidateCount ? size++ : size - 1;
+			while (position > 0 && distances[position - 1] > distance) {
+				candidates[position] = candidates[position - 1];
+				distances[position] = distances[position - 1];
+				position--;
+			}
+			candidates[position] = i;
+			distances[position] = distance;
+		}
+
+		return candidates;
+	}
+}
@@ -0,0 +1,38 @@
+package io.korhner.asciimg.image.character_index;
+
+import io.korhner.asciimg.image.AsciiImgCache;
+import io.korhner.asciimg.image.matrix.GrayscaleMatrix;
+import io.korhner.asciimg.image.matrix.GrayscaleStatistics;
+
+/**
+ * Chooses the character whose mean brightness is closest to the mean
+ * brightness of the tile, using the luminance lookup table of the cache. The
+ * tile structure is ignored, so this is a fast mode for previews and
+ * thumbnails rather than a replacement for structural matching.
+ */
+public class LuminanceLookupIndex implements CharacterIndex {
+
+	/** The character cache. */
+	private final AsciiImgCache characterCache;
+
+	/**
+	 * Instantiates a new luminance lookup index.
+	 *
+	 * @param characterCache
+	 *            the character cache
+	 */
+	public LuminanceLookupIndex(final AsciiImgCache characterCache) {
+		this.characterCache = characterCache;
+	}
+
+	@Override
+	public int findBestFit(final GrayscaleMatrix tile) {
+		return this.characterCache.findCharacterByLuminance(GrayscaleStatistics
+				.calculateMean(tile));
+	}
+
+	@Override
+	public AsciiImgCache getCharacterCache() {
+		return this.characterCache;
+	}
+}
@@ -0,0 +1,269 @@
+package io.korhner.asciimg.image.character_index;
+
+import io.korhner.asciimg.image.AsciiImgCache;
+import io.korhner.asciimg.image.matrix.GrayscaleMatrix;
+import io.korhner.asciimg.utils.FloatKernels;
+
+import java.util.Arrays;
+
+/**
+ * A vantage point tree over character pixels, searched by euclidean distance.
+ * The nearest character by euclidean distance is the best fit by
+ * {@link io.korhner.asciimg.image.character_fit_strategy.ColorSquareErrorFitStrategy}
+ * , so the index can replace a brute force search with that strategy.
+ * 
+ * Each node holds a vantage point character and the median distance of the
+ * characters below it. Characters closer than the median go to the inside
+ * subtree and the rest to the outside subtree. A search skips a subtree when
+ * the triangle inequality proves it can not hold a closer character.
+ * 
+ * In exact mode the result is the same as a brute force search, with ties
+ * going to the lower character index. In approximate mode the search stops
+ * after comparing the tile to a fraction of the characters, trading recall
+ * for speed. Subtrees on the same side as the tile are searched first, so
+ * the best candidates are usually compared early.
+ */
+public class VantagePointTreeIndex implements CharacterIndex {
+
+	/**
+	 * Best fit found so far during a single search.
+	 */
+	private static class SearchState {
+
+		/** Cache index of the best fit character. */
+		private int bestFit = -1;
+
+		/** Squared distance of the best fit character. */
+		private float bestDistance = Float.MAX_VALUE;
+
+		/** Number of characters compared so far. */
+		private int checks;
+	}
+
+	/**
+	 * Relative slack added to pruning distances, so float rounding can not
+	 * prune a subtree that holds the nearest character.
+	 */
+	private static final float PRUNING_SLACK = 1e-4f;
+
+	/** The character cache. */
+	private final AsciiImgCache characterCache;
+
+	/** Maximum number of characters compared per search. */
+	private final int maxChecks;
+
+	/** Cache index of the vantage point character of each node. */
+	private final int[] vantagePoints;
+
+	/** Median distance from the vantage point of each node. */
+	private final float[] radiuses;
+
+	/** Inside subtree node of each node, or -1. */
+	private final int[] insideNodes;
+
+	/** Outside subtree node of each node, or -1. */
+	private final int[] outsideNodes;
+
+	/** Number of nodes created so far while building. */
+	private int nodeCount;
+
+	/**
+	 * Builds an exact index.
+	 *
+	 * @param characterCache
+	 *            the character cache
+	 */
+	public VantagePointTreeIndex(final AsciiImgCache characterCache) {
+		this(characterCache, 1f);
+	}
+
+	/**
+	 * Builds an index that compares each tile to at most a fraction of the
+	 * characters.
+	 *
+	 * @param characterCache
+	 *            the character cache
+	 * @param searchFraction
+	 *            fraction of characters compared per tile, between 0 and 1. A
+	 *            fraction of 1 gives an exact index.
+	 */
+	public VantagePointTreeIndex(final AsciiImgCache characterCache,
+			final float searchFraction) {
+		if (!(searchFraction > 0f && searchFraction <= 1f)) {
+			throw new IllegalArgumentException("Illegal search fraction!");
+		}
+
+		final int characterCount = characterCache.getCharacterCount();
+
+		this.characterCache = characterCache;
+		this.maxChecks = searchFraction == 1f ? Integer.MAX_VALUE : Math.max(
+				1, (int) Math.ceil(searchFraction * characterCount));
+		this.vantagePoints = new int[characterCount];
+		this.radiuses = new float[characterCount];
+		this.insideNodes = new int[characterCount];
+		this.outsideNodes = new int[characterCount];
+
+		int[] characters = new int[characterCount];
+		for (int i = 0; i < characterCount; i++) {
+			characters[i] = i;
+		}
+		build(characters, 0, characterCount, new float[characterCount]);
+	}
+
+	/**
+	 * Builds the subtree of a range of characters.
+	 *
+	 * @param characters
+	 *            character indexes, reordered while building
+	 * @param from
+	 *            start of the range, inclusive
+	 * @param to
+	 *            end of the range, exclusive
+	 * @param distances
+	 *            scratch array for distances, same length as characters
+	 * @return node index of the subtree root, or -1 if the range is empty
+	 */
+	private int build(final int[] characters, final int from, final int to,
+			final float[] distances) {
+		if (from >= to) {
+			return -1;
+		}
+
+		final int node = this.nodeCount++;
+		this.vantagePoints[node] = characters[from];
+
+		if (to - from == 1) {
+			this.insideNodes[node] = -1;
+			this.outsideNodes[node] = -1;
+			return node;
+		}
+
+		// sort the rest by distance from the vantage point
+		for (int i = from + 1; i < to; i++) {
+			distances[i] = distance(characters[from], characters[i]);
+		}
+		sortByDistance(characters, distances, from + 1, to);
+
+		// split at the median
+		int median = (from + 1 + to) / 2;
+		this.radiuses[node] = distances[median - 1];
+
+		this.insideNodes[node] = build(characters, from + 1, median, distances);
+		this.outsideNodes[node] = build(characters, median, to, distances);
+		return node;
+	}
+
+	/**
+	 * Calculates the euclidean distance between two characters.
+	 *
+	 * @param first
+	 *            cache index of the first character
+	 * @param second
+	 *            cache index of the second character
+	 * @return the distance
+	 */
+	private float distance(final int first, final int second) {
+		float[] data = this.characterCache.getCharacterData();
+		return (float) Math.sqrt(FloatKernels.squaredDistance(data,
+				this.characterCache.getCharacterOffset(first), data,
+				this.characterCache.getCharacterOffset(second),
+				this.characterCache.getCharacterPixelCount()));
+	}
+
+	@Override
+	public int findBestFit(final GrayscaleMatrix tile) {
+		SearchState state = new SearchState();
+		search(this.nodeCount > 0 ? 0 : -1, tile, state);
+		return state.bestFit;
+	}
+
+	@Override
+	public AsciiImgCache getCharacterCache() {
+		return this.characterCache;
+	}
+
+	/**
+	 * Searches a subtree for characters closer than the best fit so far.
+	 *
+	 * @param node
+	 *            subtree root node, or -1
+	 * @param tile
+	 *            the tile
+	 * @param state
+	 *            search state
+	 */
+	private void search(final int node, final GrayscaleMatrix tile,
+			final SearchState state) {
+		if (node < 0 || state.checks >= this.maxChecks) {
+			return;
+		}
+
+		final int character = this.vantagePoints[node];
+		float squaredDistance = FloatKernels.squaredDistance(
+				this.characterCache.getCharacterData(),
+				this.characterCache.getCharacterOffset(character),
+				tile.getWidth(), tile.getData(), tile.getOffset(),
+				tile.getRowStride(), tile.getWidth(), tile.getHeight());
+		state.checks++;
+
+		if (squaredDistance < state.bestDistance
+				|| (squaredDistance == state.bestDistance && character < state.bestFit)) {
+			state.bestDistance = squaredDistance;
+			state.bestFit = character;
+		}
+
+		final float distance = (float) Math.sqrt(squaredDistance);
+		final float radius = this.radiuses[node];
+
+		if (distance <= radius) {
+			search(this.insideNodes[node], tile, state);
+			if (distance + searchRadius(state) >= radius) {
+				search(this.outsideNodes[node], tile, state);
+			}
+		} else {
+			search(this.outsideNodes[node], tile, state);
+			if (distance - searchRadius(state) <= radius) {
+				search(this.insideNodes[node], tile, state);
+			}
+		}
+	}
+
+	/**
+	 * Gets the distance within which a closer character may still be found.
+	 *
+	 * @param state
+	 *            search state
+	 * @return distance of the best fit so far, plus slack for rounding
+	 */
+	private float searchRadius(final SearchState state) {
+		return (float) Math.sqrt(state.bestDistance) * (1 + PRUNING_SLACK)
+				+ PRUNING_SLACK;
+	}
+
+	/**
+	 * Sorts a range of characters by distance, keeping both arrays aligned.
+	 *
+	 * @param characters
+	 *            character indexes
+	 * @param distances
+	 *            distance of each character
+	 * @param from
+	 *            start of the range, inclusive
+	 * @param to
+	 *            end of the range, exclusive
+	 */
+	private static void sortByDistance(final int[] characters,
+			final float[] distances, final int from, final int to) {
+		// bits of non negative floats sort in the same order as the floats
+		long[] keys = new long[to - from];
+		for (int i = from; i < to; i++) {
+			keys[i - from] = ((long) Float.floatToIntBits(distances[i]) << 32)
+					| characters[i];
+		}
+		Arrays.sort(keys);
+		for (int i = from; i < to; i++) {
+			characters[i] = (int) keys[i - from];
+			distances[i] = Float.intBitsToFloat((int) (keys[i - from] >>> 32));
+		}
+	}
+}
@@ -2,37 +2,110 @@ package io.korhner.asciimg.image.converter;
 
 import io.korhner.asciimg.image.AsciiImgCache;
 import io.korhner.asciimg.image.character_fit_strategy.BestCharacterFitStrategy;
+import io.korhner.asciimg.image.character_fit_strategy.ByteCharacterFitStrategy;
+import io.korhner.asciimg.image.character_fit_strategy.StatisticalCharacterFitStrategy;
+import io.korhner.asciimg.image.character_index.CharacterIndex;
+import io.korhner.asciimg.image.matrix.ByteGrayscaleMatrix;
+import io.korhner.asciimg.image.matrix.DirectGrayscaleMatrix;
+import io.korhner.asciimg.image.matrix.DirectGrayscaleMatrixPool;
 import io.korhner.asciimg.image.matrix.GrayscaleMatrix;
+import io.korhner.asciimg.image.matrix.GrayscaleStatistics;
+import io.korhner.asciimg.image.matrix.ReadableGrayscaleMatrix;
+import io.korhner.asciimg.image.matrix.SummedAreaTable;
 import io.korhner.asciimg.image.matrix.TiledGrayscaleMatrix;
 import io.korhner.asciimg.utils.ArrayUtils;
 
 import java.awt.Dimension;
 import java.awt.image.BufferedImage;
-import java.util.Map.Entry;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntUnaryOperator;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
+
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
 
 /**
  * A class used to convert an image to an ascii art. Output and conversion
  * argorithm are decoupled.
  *
+ * The character cache and fit strategy of a converter never change, and the
+ * state of each conversion is kept in its own {@link ConversionContext}. A
+ * single converter can therefore convert images on many threads at once.
+ * Settings are given to the converter when it is created, see
+ * {@link ConverterSettings}.
+ *
  * @param <Output>
  *            output type of the ascii art
  */
 public abstract class AsciiConverter<Output> {
 
+	/** Default number of tiles matched by a single parallel task. */
+	public static final int DEFAULT_PARALLEL_CHUNK_SIZE = 256;
+
+	/** Default number of tile rows read at once by streaming conversion. */
+	public static final int DEFAULT_STREAMING_BAND_ROWS = 1;
+
 	/** The character cache. */
-	protected AsciiImgCache characterCache;
+	protected final AsciiImgCache characterCache;
 
 	/**
 	 * The character fit strategy used to determine the best character for each
 	 * source image tile.
 	 */
-	protected BestCharacterFitStrategy characterFitStrategy;
+	protected final BestCharacterFitStrategy characterFitStrategy;
+
+	/**
+	 * Executor used to match tiles in parallel. If null, tiles are matched
+	 * sequentially on the calling thread.
+	 */
+	protected final ExecutorService executorService;
+
+	/** Number of tiles matched by a single parallel task. */
+	protected final int parallelChunkSize;
 
-	/** The output. */
-	protected Output output;
+	/** Number of tile rows read at once by streaming conversion. */
+	protected final int streamingBandRows;
 
 	/**
-	 * Instantiates a new ascii converter.
+	 * Largest number of bands an image reader without random access to rows
+	 * is read in, or 0 to read it in bands of the streaming band rows.
+	 */
+	protected final int sequentialBandCount;
+
+	/**
+	 * Pool of direct memory for source matrices, or null to keep them on the
+	 * heap.
+	 */
+	protected final DirectGrayscaleMatrixPool matrixPool;
+
+	/** Cache of best fit characters of repeated tiles, or null. */
+	protected final TileMatchCache tileMatchCache;
+
+	/**
+	 * Index used to find best fit characters instead of comparing each tile
+	 * to every character, or null.
+	 */
+	protected final CharacterIndex characterIndex;
+
+	/**
+	 * Whether tile statistics of statistical strategies are read from a
+	 * summed-area table of the source image.
+	 */
+	protected final boolean summedAreaTableEnabled;
+
+	/** The settings the converter was created with. */
+	private final ConverterSettings settings;
+
+	/**
+	 * Instantiates a new ascii converter with default settings.
 	 *
 	 * @param characterCache
 	 *            the character cache
@@ -41,29 +114,51 @@ public abstract class AsciiConverter<Output> {
 	 */
 	public AsciiConverter(final AsciiImgCache characterCache,
 			final BestCharacterFitStrategy characterFitStrategy) {
+		this(characterCache, characterFitStrategy, ConverterSettings.DEFAULT);
+	}
+
+	/**
+	 * Instantiates a new ascii converter.
+	 *
+	 * @param characterCache
+	 *            the character cache
+	 * @param characterFitStrategy
+	 *            the character fit strategy
+	 * @param settings
+	 *            the converter settings
+	 */
+	public AsciiConverter(final AsciiImgCache characterCache,
+			final BestCharacterFitStrategy characterFitStrategy,
+			final ConverterSettings settings) {
 		this.characterCache = characterCache;
 		this.characterFitStrategy = characterFitStrategy;
+		this.settings = settings;
+		this.characterIndex = settings.getCharacterIndex();
+		this.executorService = settings.getExecutorService();
+		this.matrixPool = settings.getMatrixPool();
+		this.parallelChunkSize = settings.getParallelChunkSize();
+		this.sequentialBandCount = settings.getSequentialBandCount();
+		this.streamingBandRows = settings.getStreamingBandRows();
+		this.summedAreaTableEnabled = settings.isSummedAreaTableEnabled();
+		this.tileMatchCache = settings.getTileMatchCache();
 	}
 
 	/**
 	 * Override this to insert the character at a specified position in the
 	 * output.
 	 *
-	 * @param characterEntry
-	 *            character choosen as best fit
-	 * @param sourceImagePixels
-	 *            source image pixels. Can be
+	 * @param context
+	 *            context of the conversion, holding the output
+	 * @param characterIndex
+	 *            cache index of the character choosen as best fit
 	 * @param tileX
 	 *            the tile x
 	 * @param tileY
 	 *            the tile y
-	 * @param imageWidth
-	 *            the image width
 	 */
 	protected abstract void addCharacterToOutput(
-			final Entry<Character, GrayscaleMatrix> characterEntry,
-			final int[] sourceImagePixels, final int tileX, final int tileY,
-			final int imageWidth);
+			final ConversionContext<Output> context, final int characterIndex,
+			final int tileX, final int tileY);
 
 	/**
 	 * Produces an output that is an ascii art of the supplied image.
@@ -73,6 +168,126 @@ public abstract class AsciiConverter<Output> {
 	 * @return the buffered image
 	 */
 	public Output convertImage(final BufferedImage source) {
+		return convertImage(source, null);
+	}
+
+	/**
+	 * Produces an output that is an ascii art of the supplied image, reusing
+	 * the scratch buffers of a workspace. Converting images of equal size
+	 * with the same workspace allocates no new buffers after the first
+	 * conversion.
+	 *
+	 * @param source
+	 *            the source
+	 * @param workspace
+	 *            the workspace, or null to allocate new buffers
+	 * @return the output
+	 */
+	public Output convertImage(final BufferedImage source,
+			final ConversionWorkspace workspace) {
+		return convertImage(source, workspace, null);
+	}
+
+	/**
+	 * Produces an ascii art of the supplied image into an existing output,
+	 * reusing the scratch buffers of a workspace. Together they make repeated
+	 * conversions of equal-sized images allocate no new buffers at all. The
+	 * output must fit the ascii art, see {@link #resetOutput}. Only converters
+	 * that {@link #supportsExistingOutput() support existing outputs} accept
+	 * one.
+	 *
+	 * @param source
+	 *            the source
+	 * @param workspace
+	 *            the workspace, or null to allocate new buffers
+	 * @param output
+	 *            the output to overwrite, or null to create a new output
+	 * @return the output
+	 */
+	public Output convertImage(final BufferedImage source,
+			final ConversionWorkspace workspace, final Output output) {
+		if (output != null && !supportsExistingOutput()) {
+			throw new IllegalArgumentException(
+					"Converter does not support existing outputs!");
+		}
+
+		try {
+			// match the whole image at once
+			return convert(new BufferedImagePixelSource(source),
+					Integer.MAX_VALUE, workspace, output);
+		} catch (IOException e) {
+			// images in memory are read without I/O
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Produces an output that is an ascii art of the first image of an image
+	 * reader, without reading the whole image into memory. The image is read
+	 * in bands of the streaming band rows with
+	 * {@link ImageReadParam#setSourceRegion}, see
+	 * {@link ImageReaderPixelSource}, so memory used for reading is bounded
+	 * by one band regardless of the image height. Readers of formats without
+	 * random access to rows, such as PNG, decode from the start of the image
+	 * for every band, which takes time quadratic in the image height unless a
+	 * sequential band count is set, see
+	 * {@link ConverterSettings.Builder#setSequentialBandCount(int)}.
+	 *
+	 * @param source
+	 *            image reader with its input set
+	 * @return the output
+	 * @throws IOException
+	 *             if the image can not be read
+	 * @see #convertImage(PixelSource)
+	 */
+	public Output convertImage(final ImageReader source) throws IOException {
+		return convertImage(new ImageReaderPixelSource(source,
+				ImageReaderPixelSource.getBandHeight(source,
+						this.streamingBandRows
+								* this.characterCache.getCharacterImageSize().height,
+						this.sequentialBandCount)));
+	}
+
+	/**
+	 * Produces an output that is an ascii art of a pixel source, without
+	 * reading the whole image into memory. The source is read in bands of
+	 * whole tile rows, and each band is matched and added to the output
+	 * before the next one is read. Memory used for matching is bounded by one
+	 * band of the streaming band rows. Memory held by the source itself
+	 * depends on the source, for example on the band height of an
+	 * {@link ImageReaderPixelSource}. The output itself still grows with the
+	 * image.
+	 *
+	 * @param source
+	 *            the pixel source
+	 * @return the output
+	 * @throws IOException
+	 *             if the pixels can not be read
+	 * @see ConverterSettings.Builder#setStreamingBandRows(int)
+	 */
+	public Output convertImage(final PixelSource source) throws IOException {
+		return convert(source, this.streamingBandRows, null, null);
+	}
+
+	/**
+	 * Produces an output that is an ascii art of a pixel source, matching it
+	 * in bands of whole tile rows.
+	 *
+	 * @param source
+	 *            the pixel source
+	 * @param bandRows
+	 *            number of tile rows matched at once
+	 * @param workspace
+	 *            workspace with reused scratch buffers, or null
+	 * @param output
+	 *            the output to overwrite, or null to create a new output
+	 * @return the output
+	 * @throws IOException
+	 *             if the pixels can not be read
+	 */
+	private Output convert(final PixelSource source, final int bandRows,
+			final ConversionWorkspace workspace, final Output output)
+			throws IOException {
 		// dimension of each tile
 		Dimension tileSize = this.characterCache.getCharacterImageSize();
 
@@ -82,67 +297,485 @@ public abstract class AsciiConverter<Output> {
 		int outputImageHeight = (source.getHeight() / tileSize.height)
 				* tileSize.height;
 
-		// extract pixels from source image
-		int[] imagePixels = source.getRGB(0, 0, outputImageWidth,
-				outputImageHeight, null, 0, outputImageWidth);
+		if (output != null) {
+			resetOutput(output, outputImageWidth, outputImageHeight);
+		}
+
+		final ConversionContext<Output> context = new ConversionContext<>(
+				output != null ? output : initializeOutput(outputImageWidth,
+						outputImageHeight), outputImageWidth,
+				outputImageHeight);
+
+		matchBands(source, bandRows, workspace, new ObjIntConsumer<int[]>() {
+			@Override
+			public void accept(final int[] bestFits, final int firstTileY) {
+				addCharactersToOutput(context, bestFits, firstTileY);
+			}
+		});
+
+		finalizeOutput(context);
+
+		return context.getOutput();
+	}
+
+	/**
+	 * Matches an image to a grid of characters, without building an output.
+	 * The grid is filled directly with the cache index of the best fit
+	 * character of each tile.
+	 *
+	 * @param source
+	 *            the source
+	 * @return the character grid
+	 */
+	public CharacterGrid convertToGrid(final BufferedImage source) {
+		try {
+			// match the whole image at once
+			return convertToGrid(new BufferedImagePixelSource(source),
+					Integer.MAX_VALUE);
+		} catch (IOException e) {
+			// images in memory are read without I/O
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Matches a pixel source to a grid of characters, without building an
+	 * output. The source is read in bands of whole tile rows, see
+	 * {@link #convertImage(PixelSource)}.
+	 *
+	 * @param source
+	 *            the pixel source
+	 * @return the character grid
+	 * @throws IOException
+	 *             if the pixels can not be read
+	 */
+	public CharacterGrid convertToGrid(final PixelSource source)
+			throws IOException {
+		return convertToGrid(source, this.streamingBandRows);
+	}
+
+	/**
+	 * Matches a pixel source to a grid of characters in bands of whole tile
+	 * rows.
+	 *
+	 * @param source
+	 *            the pixel source
+	 * @param bandRows
+	 *            number of tile rows matched at once
+	 * @return the character grid
+	 * @throws IOException
+	 *             if the pixels can not be read
+	 */
+	private CharacterGrid convertToGrid(final PixelSource source,
+			final int bandRows) throws IOException {
+		// dimension of each tile
+		Dimension tileSize = this.characterCache.getCharacterImageSize();
+
+		final CharacterGrid grid = new CharacterGrid(this.characterCache,
+				source.getWidth() / tileSize.width, source.getHeight()
+						/ tileSize.height);
+		final short[] characterIndexes = grid.getCharacterIndexes();
+
+		matchBands(source, bandRows, null, new ObjIntConsumer<int[]>() {
+			@Override
+			public void accept(final int[] bestFits, final int firstTileY) {
+				int offset = firstTileY * grid.getWidth();
+				for (int i = 0; i < bestFits.length; i++) {
+					characterIndexes[offset + i] = (short) bestFits[i];
+				}
+			}
+		});
+
+		return grid;
+	}
+
+	/**
+	 * Adds matched characters of whole tile rows to the output, in tile order.
+	 *
+	 * @param context
+	 *            context of the conversion
+	 * @param bestFits
+	 *            cache index of the best fit character for each tile
+	 * @param firstTileY
+	 *            tile y of the first tile
+	 */
+	private void addCharactersToOutput(final ConversionContext<Output> context,
+			final int[] bestFits, final int firstTileY) {
+		final int tilesX = context.getImageWidth()
+				/ this.characterCache.getCharacterImageSize().width;
+
+		for (int i = 0; i < bestFits.length; i++) {
+			int tileX = ArrayUtils.convert1DtoX(i, tilesX);
+			int tileY = firstTileY + ArrayUtils.convert1DtoY(i, tilesX);
+
+			addCharacterToOutput(context, bestFits[i], tileX, tileY);
+		}
+	}
+
+	/**
+	 * Checks that the character index, if any, was built for the character
+	 * cache of this converter.
+	 */
+	private void checkCharacterIndex() {
+		if (this.characterIndex != null
+				&& this.characterIndex.getCharacterCache() != this.characterCache) {
+			throw new IllegalStateException(
+					"Character index was built for a different cache!");
+		}
+	}
+
+	/**
+	 * Finds the best fit character for every tile of a band of whole rows of
+	 * a pixel source.
+	 *
+	 * @param source
+	 *            the pixel source
+	 * @param startPixelY
+	 *            y coordinate of the first row of the band
+	 * @param width
+	 *            band width, a multiple of the tile width
+	 * @param height
+	 *            band height, a multiple of the tile height
+	 * @param workspace
+	 *            workspace with reused scratch buffers, or null
+	 * @return cache index of the best fit character for each tile
+	 * @throws IOException
+	 *             if the pixels can not be read
+	 */
+	private int[] findBestFits(final PixelSource source,
+			final int startPixelY, final int width, final int height,
+			final ConversionWorkspace workspace) throws IOException {
+		// dimension of each tile
+		Dimension tileSize = this.characterCache.getCharacterImageSize();
+
+		final int tilesX = width / tileSize.width;
+		final int tilesY = height / tileSize.height;
+		final int[] bestFits = workspace != null ? workspace
+				.getBestFits(tilesX * tilesY) : new int[tilesX * tilesY];
+
+		// compare each tile to every character to determine best fit
+		if (this.characterIndex == null
+				&& this.characterFitStrategy instanceof ByteCharacterFitStrategy) {
+			if (workspace == null) {
+				return findBestFits(
+						source.readByteMatrix(startPixelY, width, height),
+						tilesX, bestFits);
+			}
+
+			ByteGrayscaleMatrix sourceMatrix = workspace.getByteMatrix(width,
+					height);
+			byte[] data = sourceMatrix.getData();
+			float[] row = workspace.getRow(width);
+			for (int y = 0; y < height; y++) {
+				source.readRow(startPixelY + y, width, row, 0);
+				int rowStart = sourceMatrix.getIndex(0, y);
+				for (int x = 0; x < width; x++) {
+					data[rowStart + x] = (byte) Math.round(row[x]);
+				}
+			}
+			return findBestFits(sourceMatrix, tilesX, bestFits);
+		}
 
 		// process the pixels to a grayscale matrix
-		GrayscaleMatrix sourceMatrix = new GrayscaleMatrix(imagePixels,
-				outputImageWidth, outputImageHeight);
+		if (this.matrixPool == null) {
+			if (workspace == null) {
+				return findBestFits(
+						source.readMatrix(startPixelY, width, height),
+						tileSize, bestFits);
+			}
+
+			GrayscaleMatrix sourceMatrix = workspace.getMatrix(width, height);
+			for (int y = 0; y < height; y++) {
+				source.readRow(startPixelY + y, width, sourceMatrix.getData(),
+						sourceMatrix.getIndex(0, y));
+			}
+			return findBestFits(sourceMatrix, tileSize, bestFits);
+		}
+
+		try (DirectGrayscaleMatrix sourceMatrix = this.matrixPool.acquire(
+				width, height)) {
+			float[] row = workspace != null ? workspace.getRow(width)
+					: new float[width];
+			for (int y = 0; y < height; y++) {
+				source.readRow(startPixelY + y, width, row, 0);
+				sourceMatrix.setRow(y, row, 0);
+			}
+
+			// findBestFits returns only once no task reads the matrix, even
+			// if matching fails, so it can be returned to the pool
+			return findBestFits(sourceMatrix, tileSize, bestFits);
+		}
+	}
+
+	/**
+	 * Finds the best fit character for every tile of a grayscale matrix.
+	 *
+	 * @param sourceMatrix
+	 *            the matrix
+	 * @param tileSize
+	 *            dimension of each tile
+	 * @param bestFits
+	 *            array to store the best fit character of each tile to
+	 * @return the best fits array
+	 */
+	private int[] findBestFits(final ReadableGrayscaleMatrix sourceMatrix,
+			final Dimension tileSize, final int[] bestFits) {
+		// statistics are only needed by statistical strategies using the tile
+		// variance, and not read from the table with a tile match cache,
+		// whose results must only depend on tile pixels and not on where in
+		// the table a tile is
+		final boolean useStatistics = this.summedAreaTableEnabled
+				&& this.tileMatchCache == null
+				&& this.characterIndex == null
+				&& this.characterFitStrategy instanceof StatisticalCharacterFitStrategy
+				&& ((StatisticalCharacterFitStrategy) this.characterFitStrategy)
+						.usesTileVariance();
 
 		// divide matrix into tiles for easy processing
-		TiledGrayscaleMatrix tiledMatrix = new TiledGrayscaleMatrix(
-				sourceMatrix, tileSize.width, tileSize.height);
+		final TiledGrayscaleMatrix tiledMatrix = new TiledGrayscaleMatrix(
+				sourceMatrix, tileSize.width, tileSize.height,
+				useStatistics ? new SummedAreaTable(sourceMatrix) : null);
 
-		this.output = initializeOutput(outputImageWidth, outputImageHeight);
+		return findBestFits(new Supplier<IntUnaryOperator>() {
+			@Override
+			public IntUnaryOperator get() {
+				// tiles that are not views are copied to a buffer reused for
+				// all tiles of the task
+				final GrayscaleMatrix tileBuffer = sourceMatrix instanceof GrayscaleMatrix ? null
+						: new GrayscaleMatrix(tileSize.width, tileSize.height);
 
-		// compare each tile to every character to determine best fit
-		for (int i = 0; i < tiledMatrix.getTileCount(); i++) {
+				return new IntUnaryOperator() {
+					@Override
+					public int applyAsInt(final int tileIndex) {
+						return findCachedBestFit(
+								tiledMatrix.getTile(tileIndex, tileBuffer),
+								useStatistics ? tiledMatrix
+										.getTileStatistics(tileIndex) : null);
+					}
+				};
+			}
+		}, bestFits);
+	}
 
-			GrayscaleMatrix tile = tiledMatrix.getTile(i);
+	/**
+	 * Finds the best fit character for a single tile.
+	 *
+	 * @param tile
+	 *            the tile
+	 * @param tileStatistics
+	 *            precalculated tile statistics for a statistical strategy, or
+	 *            null
+	 * @return cache index of the best fit character
+	 */
+	private int findBestFit(final GrayscaleMatrix tile,
+			final GrayscaleStatistics tileStatistics) {
+		if (this.characterIndex != null) {
+			return this.characterIndex.findBestFit(tile);
+		}
 
-			float minError = Float.MAX_VALUE;
-			Entry<Character, GrayscaleMatrix> bestFit = null;
+		if (tileStatistics != null) {
+			return ((StatisticalCharacterFitStrategy) this.characterFitStrategy)
+					.findBestFit(this.characterCache, tile, tileStatistics);
+		}
 
-			for (Entry<Character, GrayscaleMatrix> charImage : characterCache) {
-				GrayscaleMatrix charPixels = charImage.getValue();
+		return this.characterFitStrategy.findBestFit(this.characterCache,
+				tile);
+	}
 
-				float error = this.characterFitStrategy.calculateError(
-						charPixels, tile);
+	/**
+	 * Finds the best fit character for a single tile, looking it up in the
+	 * tile match cache first if one is set.
+	 *
+	 * @param tile
+	 *            the tile
+	 * @param tileStatistics
+	 *            precalculated tile statistics for a statistical strategy, or
+	 *            null
+	 * @return cache index of the best fit character
+	 */
+	private int findCachedBestFit(final GrayscaleMatrix tile,
+			final GrayscaleStatistics tileStatistics) {
+		if (this.tileMatchCache == null) {
+			return findBestFit(tile, tileStatistics);
+		}
 
-				if (error < minError) {
-					minError = error;
-					bestFit = charImage;
-				}
+		TileMatchCache.Signature signature = this.tileMatchCache
+				.createSignature(this.characterCache,
+						this.characterIndex != null ? this.characterIndex
+								: this.characterFitStrategy, tile);
+		int bestFit = this.tileMatchCache.get(signature);
+		if (bestFit < 0) {
+			bestFit = findBestFit(tile, tileStatistics);
+			this.tileMatchCache.put(signature, bestFit);
+		}
+		return bestFit;
+	}
+
+	/**
+	 * Finds the best fit character for a single 8-bit tile, looking it up in
+	 * the tile match cache first if one is set. Only used with a
+	 * {@link ByteCharacterFitStrategy}.
+	 *
+	 * @param tile
+	 *            the tile
+	 * @return cache index of the best fit character
+	 */
+	private int findCachedBestFit(final ByteGrayscaleMatrix tile) {
+		final ByteCharacterFitStrategy byteStrategy = (ByteCharacterFitStrategy) this.characterFitStrategy;
+		if (this.tileMatchCache == null) {
+			return byteStrategy.findBestFit(this.characterCache, tile);
+		}
+
+		TileMatchCache.Signature signature = this.tileMatchCache
+				.createSignature(this.characterCache, byteStrategy, tile);
+		int bestFit = this.tileMatchCache.get(signature);
+		if (bestFit < 0) {
+			bestFit = byteStrategy.findBestFit(this.characterCache, tile);
+			this.tileMatchCache.put(signature, bestFit);
+		}
+		return bestFit;
+	}
+
+	/**
+	 * Finds the best fit character for every tile of an 8-bit source image.
+	 * Tiles are views into the source, so no pixels are copied.
+	 *
+	 * @param source
+	 *            the 8-bit source image
+	 * @param tilesX
+	 *            number of tiles on x axis
+	 * @param bestFits
+	 *            array to store the best fit character of each tile to
+	 * @return the best fits array
+	 */
+	private int[] findBestFits(final ByteGrayscaleMatrix source,
+			final int tilesX, final int[] bestFits) {
+		final Dimension tileSize = this.characterCache.getCharacterImageSize();
+
+		final IntUnaryOperator tileMatcher = new IntUnaryOperator() {
+			@Override
+			public int applyAsInt(final int tileIndex) {
+				return findCachedBestFit(ByteGrayscaleMatrix.createView(
+						source, tileSize.width, tileSize.height,
+						ArrayUtils.convert1DtoX(tileIndex, tilesX)
+								* tileSize.width,
+						ArrayUtils.convert1DtoY(tileIndex, tilesX)
+								* tileSize.height));
+			}
+		};
+
+		// views hold no state, so all tasks share a single matcher
+		return findBestFits(new Supplier<IntUnaryOperator>() {
+			@Override
+			public IntUnaryOperator get() {
+				return tileMatcher;
 			}
+		}, bestFits);
+	}
 
-			int tileX = ArrayUtils.convert1DtoX(i, tiledMatrix.getTilesX());
-			int tileY = ArrayUtils.convert1DtoY(i, tiledMatrix.getTilesX());
+	/**
+	 * Finds the best fit character for every tile. If an executor service is
+	 * set, the tile range is split into chunks that are matched in parallel.
+	 * Either way the result is indexed by tile, so the output is identical to
+	 * the sequential conversion. If a chunk fails, the remaining chunks are
+	 * cancelled, and the failure is rethrown only after every chunk has
+	 * stopped.
+	 *
+	 * @param tileMatchers
+	 *            creates a matcher that finds the best fit character of a
+	 *            tile by tile index. Each task creates its own matcher, and
+	 *            uses it on a single thread. Must be thread safe if an
+	 *            executor service is set.
+	 * @param bestFits
+	 *            array to store the best fit character of each tile to, one
+	 *            element per tile
+	 * @return the best fits array
+	 */
+	private int[] findBestFits(
+			final Supplier<IntUnaryOperator> tileMatchers,
+			final int[] bestFits) {
+		final int tileCount = bestFits.length;
 
-			// copy character to output
-			addCharacterToOutput(bestFit, imagePixels, tileX, tileY,
-					outputImageWidth);
+		if (this.executorService == null || tileCount <= this.parallelChunkSize) {
+			final IntUnaryOperator tileMatcher = tileMatchers.get();
+			for (int i = 0; i < tileCount; i++) {
+				bestFits[i] = tileMatcher.applyAsInt(i);
+			}
+			return bestFits;
 		}
 
-		finalizeOutput(imagePixels, outputImageWidth, outputImageHeight);
+		// set when a chunk fails, so the remaining chunks stop early
+		final AtomicBoolean cancelled = new AtomicBoolean();
+		List<Future<?>> tasks = new ArrayList<>();
+		for (int start = 0; start < tileCount; start += this.parallelChunkSize) {
+			final int chunkStart = start;
+			final int chunkEnd = Math.min(start + this.parallelChunkSize,
+					tileCount);
+			tasks.add(this.executorService.submit(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						final IntUnaryOperator tileMatcher = tileMatchers.get();
+						for (int i = chunkStart; i < chunkEnd
+								&& !cancelled.get(); i++) {
+							bestFits[i] = tileMatcher.applyAsInt(i);
+						}
+					} catch (RuntimeException | Error e) {
+						cancelled.set(true);
+						throw e;
+					}
+				}
+			}));
+		}
 
-		return this.output;
+		// every task is waited for, even after a failure, so no task is left
+		// reading the source or writing the best fits once this returns.
+		// Future completion also publishes the results written by each task
+		Throwable failure = null;
+		boolean interrupted = false;
+		for (Future<?> task : tasks) {
+			while (true) {
+				try {
+					task.get();
+					break;
+				} catch (InterruptedException e) {
+					cancelled.set(true);
+					interrupted = true;
+				} catch (ExecutionException e) {
+					cancelled.set(true);
+					if (failure == null) {
+						failure = e.getCause();
+					}
+					break;
+				}
+			}
+		}
 
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+			if (failure == null) {
+				throw new IllegalStateException("Tile matching interrupted!");
+			}
+		}
+		if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		}
+		if (failure != null) {
+			throw new IllegalStateException("Tile matching failed!", failure);
+		}
+
+		return bestFits;
 	}
 
 	/**
 	 * Override this if any action needs to be done at the end of the
 	 * conversion.
 	 *
-	 * @param sourceImagePixels
-	 *            source image pixels data. Can be
-	 * @param imageWidth
-	 *            source image width
-	 * @param imageHeight
-	 *            source image height
+	 * @param context
+	 *            context of the conversion, holding the output
 	 */
-	protected abstract void finalizeOutput(final int[] sourceImagePixels,
-			final int imageWidth, final int imageHeight);
+	protected abstract void finalizeOutput(
+			final ConversionContext<Output> context);
 
 	/**
 	 * Gets the character fit strategy.
@@ -153,6 +786,90 @@ public abstract class AsciiConverter<Output> {
 		return this.characterFitStrategy;
 	}
 
+	/**
+	 * Gets the character index.
+	 *
+	 * @return the character index, or null if the character fit strategy is
+	 *         used to compare each tile to every character
+	 */
+	public CharacterIndex getCharacterIndex() {
+		return this.characterIndex;
+	}
+
+	/**
+	 * Gets the executor service used for parallel tile matching.
+	 *
+	 * @return the executor service, or null if matching is sequential
+	 */
+	public ExecutorService getExecutorService() {
+		return this.executorService;
+	}
+
+	/**
+	 * Gets the pool of direct memory for source matrices.
+	 *
+	 * @return the matrix pool, or null if source matrices are on the heap
+	 */
+	public DirectGrayscaleMatrixPool getMatrixPool() {
+		return this.matrixPool;
+	}
+
+	/**
+	 * Gets the number of tiles matched by a single parallel task.
+	 *
+	 * @return the parallel chunk size
+	 */
+	public int getParallelChunkSize() {
+		return this.parallelChunkSize;
+	}
+
+	/**
+	 * Gets the largest number of bands an image reader without random access
+	 * to rows is read in.
+	 *
+	 * @return the sequential band count, or 0 if bands always have the
+	 *         streaming band rows
+	 */
+	public int getSequentialBandCount() {
+		return this.sequentialBandCount;
+	}
+
+	/**
+	 * Gets the settings the converter was created with.
+	 *
+	 * @return the settings
+	 */
+	public ConverterSettings getSettings() {
+		return this.settings;
+	}
+
+	/**
+	 * Gets the number of tile rows read at once by streaming conversion.
+	 *
+	 * @return the streaming band rows
+	 */
+	public int getStreamingBandRows() {
+		return this.streamingBandRows;
+	}
+
+	/**
+	 * Gets the tile match cache.
+	 *
+	 * @return the tile match cache, or null if tiles are always matched
+	 */
+	public TileMatchCache getTileMatchCache() {
+		return this.tileMatchCache;
+	}
+
+	/**
+	 * Checks whether tile statistics are read from a summed-area table.
+	 *
+	 * @return true if a summed-area table is built for statistical strategies
+	 */
+	public boolean isSummedAreaTableEnabled() {
+		return this.summedAreaTableEnabled;
+	}
+
 	/**
 	 * Override this to return an empty output object that will be filled during
 	 * the ascii art conversion.
@@ -167,22 +884,130 @@ public abstract class AsciiConverter<Output> {
 			final int imageHeight);
 
 	/**
-	 * Sets the character cache.
+	 * Matches a pixel source in bands of whole tile rows. Each band is read,
+	 * matched and handed to the consumer before the next one is read.
 	 *
-	 * @param characterCache new character cache
+	 * @param source
+	 *            the pixel source
+	 * @param bandRows
+	 *            number of tile rows matched at once
+	 * @param bandConsumer
+	 *            receives the cache index of the best fit character for each
+	 *            tile of a band, and the tile y of its first tile
+	 * @throws IOException
+	 *             if the pixels can not be read
 	 */
-	public void setCharacterCache(final AsciiImgCache characterCache) {
-		this.characterCache = characterCache;
+	protected void matchBands(final PixelSource source, final int bandRows,
+			final ObjIntConsumer<int[]> bandConsumer) throws IOException {
+		matchBands(source, bandRows, null, bandConsumer);
 	}
 
 	/**
-	 * Sets the character fit strategy.
+	 * Matches a pixel source in bands of whole tile rows, reusing the scratch
+	 * buffers of a workspace. The array handed to the consumer belongs to the
+	 * workspace and is overwritten by the next band.
 	 *
-	 * @param characterFitStrategy
-	 *            new character fit strategy
+	 * @param source
+	 *            the pixel source
+	 * @param bandRows
+	 *            number of tile rows matched at once
+	 * @param workspace
+	 *            workspace with reused scratch buffers, or null
+	 * @param bandConsumer
+	 *            receives the cache index of the best fit character for each
+	 *            tile of a band, and the tile y of its first tile
+	 * @throws IOException
+	 *             if the pixels can not be read
 	 */
-	public void setCharacterFitStrategy(
-			final BestCharacterFitStrategy characterFitStrategy) {
-		this.characterFitStrategy = characterFitStrategy;
+	private void matchBands(final PixelSource source, final int bandRows,
+			final ConversionWorkspace workspace,
+			final ObjIntConsumer<int[]> bandConsumer) throws IOException {
+		checkCharacterIndex();
+
+		// dimension of each tile
+		Dimension tileSize = this.characterCache.getCharacterImageSize();
+
+		// round the width and height so we avoid partial characters
+		int width = (source.getWidth() / tileSize.width) * tileSize.width;
+		int tilesY = source.getHeight() / tileSize.height;
+
+		for (int tileY = 0; tileY < tilesY; tileY += bandRows) {
+			int bandHeight = Math.min(bandRows, tilesY - tileY)
+					* tileSize.height;
+
+			bandConsumer.accept(
+					findBestFits(source, tileY * tileSize.height, width,
+							bandHeight, workspace), tileY);
+		}
+	}
+
+	/**
+	 * Produces an output from a grid of characters matched before, without
+	 * matching again. A grid can be rendered by any number of converters that
+	 * use the same character cache, so an image matched once can be turned
+	 * into several output formats.
+	 *
+	 * @param grid
+	 *            the character grid
+	 * @return the output
+	 * @see #convertToGrid(BufferedImage)
+	 */
+	public Output render(final CharacterGrid grid) {
+		if (grid.getCharacterCache() != this.characterCache) {
+			throw new IllegalArgumentException(
+					"Grid was matched with a different cache!");
+		}
+
+		// dimension of each tile
+		Dimension tileSize = this.characterCache.getCharacterImageSize();
+
+		int outputImageWidth = grid.getWidth() * tileSize.width;
+		int outputImageHeight = grid.getHeight() * tileSize.height;
+
+		ConversionContext<Output> context = new ConversionContext<>(
+				initializeOutput(outputImageWidth, outputImageHeight),
+				outputImageWidth, outputImageHeight);
+
+		for (int tileY = 0; tileY < grid.getHeight(); tileY++) {
+			for (int tileX = 0; tileX < grid.getWidth(); tileX++) {
+				addCharacterToOutput(context,
+						grid.getCharacterIndex(tileX, tileY), tileX, tileY);
+			}
+		}
+
+		finalizeOutput(context);
+
+		return context.getOutput();
+	}
+
+	/**
+	 * Override this to let conversions write into an existing output. The
+	 * output is made empty, or checked to be overwritten completely by an
+	 * ascii art of the given size. Only called if
+	 * {@link #supportsExistingOutput()} returns true, so override both
+	 * together.
+	 *
+	 * @param output
+	 *            the existing output
+	 * @param imageWidth
+	 *            source image width
+	 * @param imageHeight
+	 *            source image height
+	 */
+	protected void resetOutput(final Output output, final int imageWidth,
+			final int imageHeight) {
+		throw new UnsupportedOperationException(
+				"Converter does not support existing outputs!");
+	}
+
+	/**
+	 * Checks whether conversions can write into an existing output, see
+	 * {@link #convertImage(BufferedImage, ConversionWorkspace, Object)}.
+	 * Override this to return true together with {@link #resetOutput}.
+	 *
+	 * @return true if existing outputs are supported
+	 */
+	public boolean supportsExistingOutput() {
+		return false;
 	}
 }
@@ -2,12 +2,11 @@ package io.korhner.asciimg.image.converter;
 
 import io.korhner.asciimg.image.AsciiImgCache;
 import io.korhner.asciimg.image.character_fit_strategy.BestCharacterFitStrategy;
-import io.korhner.asciimg.image.matrix.GrayscaleMatrix;
 import io.korhner.asciimg.utils.ArrayUtils;
 
-import java.awt.Color;
+import java.awt.Dimension;
 import java.awt.image.BufferedImage;
-import java.util.Map.Entry;
+import java.awt.image.DataBufferInt;
 
 /**
  * Converts ascii art to a BufferedImage.
@@ -28,44 +27,64 @@ public class AsciiToImageConverter extends AsciiConverter<BufferedImage> {
 	}
 
 	/**
-	 * Copy image data over the source pixels image.
+	 * Instantiates a new ascii to image converter with settings.
+	 *
+	 * @param characterCacher
+	 *            the character cacher
+	 * @param characterFitStrategy
+	 *            the character fit strategy
+	 * @param settings
+	 *            the converter settings
+	 */
+	public AsciiToImageConverter(final AsciiImgCache characterCacher,
+			final BestCharacterFitStrategy characterFitStrategy,
+			final ConverterSettings settings) {
+		super(characterCacher, characterFitStrategy, settings);
+	}
+
+	/**
+	 * Copy the pre-rendered rows of the character to the pixels of the output
+	 * image.
 	 * 
-	 * @see io.korhner.asciimg.image.converter.AsciiConverter#addCharacterToOutput(java.util.Map.Entry,
-	 *      int[], int, int, int)
+	 * @see io.korhner.asciimg.image.converter.AsciiConverter#addCharacterToOutput(ConversionContext,
+	 *      int, int, int)
 	 */
 	@Override
-	public void addCharacterToOutput(
-			final Entry<Character, GrayscaleMatrix> characterEntry,
-			final int[] sourceImagePixels, final int tileX, final int tileY, final int imageWidth) {
-		int startCoordinateX = tileX
-				* this.characterCache.getCharacterImageSize().width;
-		int startCoordinateY = tileY
-				* this.characterCache.getCharacterImageSize().height;
+	protected void addCharacterToOutput(
+			final ConversionContext<BufferedImage> context,
+			final int characterIndex, final int tileX, final int tileY) {
+		final int imageWidth = context.getImageWidth();
+		final Dimension tileSize = this.characterCache.getCharacterImageSize();
 
-		// copy winner character
-		for (int i = 0; i < characterEntry.getValue().getData().length; i++) {
-			int xOffset = i % this.characterCache.getCharacterImageSize().width;
-			int yOffset = i / this.characterCache.getCharacterImageSize().width;
+		int[] characterPixels = this.characterCache.getCharacterArgbData();
+		int characterOffset = this.characterCache
+				.getCharacterOffset(characterIndex);
 
-			int component = (int) characterEntry.getValue().getData()[i];
-			sourceImagePixels[ArrayUtils.convert2DTo1D(startCoordinateX
-					+ xOffset, startCoordinateY + yOffset, imageWidth)] = new Color(
-					component, component, component).getRGB();
+		// the output is created by this converter, so it is backed by ints
+		int[] outputPixels = ((DataBufferInt) context.getOutput().getRaster()
+				.getDataBuffer()).getData();
+		int outputOffset = ArrayUtils.convert2DTo1D(tileX * tileSize.width,
+				tileY * tileSize.height, imageWidth);
+
+		// copy winner character row by row
+		for (int y = 0; y < tileSize.height; y++) {
+			System.arraycopy(characterPixels, characterOffset, outputPixels,
+					outputOffset, tileSize.width);
+			characterOffset += tileSize.width;
+			outputOffset += imageWidth;
 		}
 
 	}
 
 	/**
-	 * Write pixels to output image.
+	 * Pixels are written directly to the output image, so there is nothing
+	 * left to do.
 	 * 
-	 * @see io.korhner.asciimg.image.converter.AsciiConverter#finalizeOutput(int[],
-	 *      int, int)
+	 * @see io.korhner.asciimg.image.converter.AsciiConverter#finalizeOutput(ConversionContext)
 	 */
 	@Override
-	protected void finalizeOutput(final int[] sourceImagePixels, final int imageWidth,
-			final int imageHeight) {
-		this.output.setRGB(0, 0, imageWidth, imageHeight, sourceImagePixels, 0,
-				imageWidth);
+	protected void finalizeOutput(
+			final ConversionContext<BufferedImage> context) {
 
 	}
 
@@ -81,4 +100,35 @@ public class AsciiToImageConverter extends AsciiConverter<BufferedImage> {
 				BufferedImage.TYPE_INT_ARGB);
 	}
 
+	/**
+	 * Checks that an existing image is overwritten completely. Every pixel is
+	 * written by the conversion, so the image is not cleared.
+	 * 
+	 * @see io.korhner.asciimg.image.converter.AsciiConverter#resetOutput(Object,
+	 *      int, int)
+	 */
+	@Override
+	protected void resetOutput(final BufferedImage output,
+			final int imageWidth, final int imageHeight) {
+		// sub images share a larger data buffer, so pixels could not be
+		// written by index
+		if (output.getType() != BufferedImage.TYPE_INT_ARGB
+				|| output.getWidth() != imageWidth
+				|| output.getHeight() != imageHeight
+				|| output.getRaster().getDataBuffer().getSize() != imageWidth
+						* imageHeight) {
+			throw new IllegalArgumentException(
+					"Output image does not fit the ascii art!");
+		}
+	}
+
+	/**
+	 * Existing images that fit the ascii art are overwritten.
+	 *
+	 * @see io.korhner.asciimg.image.converter.AsciiConverter#supportsExistingOutput()
+	 */
+	@Override
+	public boolean supportsExistingOutput() {
+		return true;
+	}
 }
@@ -2,9 +2,18 @@ package io.korhner.asciimg.image.converter;
 
 import io.korhner.asciimg.image.AsciiImgCache;
 import io.korhner.asciimg.image.character_fit_strategy.BestCharacterFitStrategy;
-import io.korhner.asciimg.image.matrix.GrayscaleMatrix;
 
-import java.util.Map.Entry;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.function.ObjIntConsumer;
 
 /**
  * Converts ascii art to String.
@@ -25,7 +34,23 @@ public class AsciiToStringConverter extends AsciiConverter<StringBuffer> {
 	}
 
 	/**
-	 * Creates an empty string buffer;
+	 * Instantiates a new ascii to string converter with settings.
+	 *
+	 * @param characterCacher
+	 *            the character cacher
+	 * @param characterFitStrategy
+	 *            the character fit strategy
+	 * @param settings
+	 *            the converter settings
+	 */
+	public AsciiToStringConverter(final AsciiImgCache characterCacher,
+			final BestCharacterFitStrategy characterFitStrategy,
+			final ConverterSettings settings) {
+		super(characterCacher, characterFitStrategy, settings);
+	}
+
+	/**
+	 * Creates an empty string buffer with capacity for the whole ascii art;
 	 * 
 	 * @see io.korhner.asciimg.image.converter.AsciiConverter#initializeOutput(int,
 	 *      int)
@@ -33,39 +58,257 @@ public class AsciiToStringConverter extends AsciiConverter<StringBuffer> {
 	@Override
 	protected StringBuffer initializeOutput(final int imageWidth,
 			final int imageHeight) {
-		return new StringBuffer();
+		Dimension tileSize = this.characterCache.getCharacterImageSize();
+		return new StringBuffer(getTextLength(imageWidth / tileSize.width,
+				imageHeight / tileSize.height));
 	}
 
 	/**
-	 * @see io.korhner.asciimg.image.converter.AsciiConverter#finalizeOutput(int[],
-	 *      int, int)
+	 * @see io.korhner.asciimg.image.converter.AsciiConverter#finalizeOutput(ConversionContext)
 	 */
 	@Override
-	protected void finalizeOutput(final int[] sourceImagePixels,
-			final int imageWidth, int imageHeight) {
+	protected void finalizeOutput(final ConversionContext<StringBuffer> context) {
 
 	}
 
 	/**
 	 * Append choosen character to StringBuffer.
 	 * 
-	 * @see io.korhner.asciimg.image.converter.AsciiConverter#addCharacterToOutput(java.util.Map.Entry,
-	 *      int[], int, int, int)
+	 * @see io.korhner.asciimg.image.converter.AsciiConverter#addCharacterToOutput(ConversionContext,
+	 *      int, int, int)
 	 */
 	@Override
-	public void addCharacterToOutput(
-			final Entry<Character, GrayscaleMatrix> characterEntry,
-			final int[] sourceImagePixels, final int tileX, final int tileY,
-			final int imageWidth) {
+	protected void addCharacterToOutput(
+			final ConversionContext<StringBuffer> context,
+			final int characterIndex, final int tileX, final int tileY) {
+		StringBuffer output = context.getOutput();
 
-		this.output.append(characterEntry.getKey());
+		output.append(this.characterCache.getCharacter(characterIndex));
 
 		// append new line at the end of the row
-		if ((tileX + 1)
-				* this.characterCache.getCharacterImageSize().getWidth() == imageWidth) {
-			this.output.append(System.lineSeparator());
+		if ((tileX + 1) * this.characterCache.getCharacterImageSize().width == context
+				.getImageWidth()) {
+			output.append(System.lineSeparator());
+		}
+
+	}
+
+	/**
+	 * Gets all characters of a cache, indexed by cache index.
+	 *
+	 * @param cache
+	 *            the character cache
+	 * @return the characters
+	 */
+	private static char[] getCharacters(final AsciiImgCache cache) {
+		final char[] characters = new char[cache.getCharacterCount()];
+		for (int i = 0; i < characters.length; i++) {
+			characters[i] = cache.getCharacter(i);
+		}
+		return characters;
+	}
+
+	/**
+	 * Gets the length of the text of a grid of characters.
+	 *
+	 * @param tilesX
+	 *            number of tiles on x axis
+	 * @param tilesY
+	 *            number of tiles on y axis
+	 * @return the text length
+	 */
+	private static int getTextLength(final int tilesX, final int tilesY) {
+		long length = (long) (tilesX + System.lineSeparator().length())
+				* tilesY;
+		if (length > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Text is too long!");
+		}
+		return (int) length;
+	}
+
+	/**
+	 * Renders a character grid to a string buffer with the fast path of
+	 * {@link #renderString(CharacterGrid)}.
+	 * 
+	 * @see io.korhner.asciimg.image.converter.AsciiConverter#render(CharacterGrid)
+	 */
+	@Override
+	public StringBuffer render(final CharacterGrid grid) {
+		if (grid.getCharacterCache() != this.characterCache) {
+			throw new IllegalArgumentException(
+					"Grid was matched with a different cache!");
+		}
+
+		char[] text = renderText(grid);
+		return new StringBuffer(text.length).append(text);
+	}
+
+	/**
+	 * Renders a character grid as text, one line per row of tiles. The text
+	 * is written to a single presized array, without synchronization.
+	 *
+	 * @param grid
+	 *            the character grid
+	 * @return the text
+	 */
+	public String renderString(final CharacterGrid grid) {
+		return new String(renderText(grid));
+	}
+
+	/**
+	 * Renders a character grid as text into a single presized array.
+	 *
+	 * @param grid
+	 *            the character grid
+	 * @return the text
+	 */
+	private static char[] renderText(final CharacterGrid grid) {
+		final int width = grid.getWidth();
+		final int height = grid.getHeight();
+		final short[] characterIndexes = grid.getCharacterIndexes();
+		final char[] lineSeparator = System.lineSeparator().toCharArray();
+
+		// look characters up once instead of for every tile
+		final char[] characters = getCharacters(grid.getCharacterCache());
+
+		final char[] text = new char[getTextLength(width, height)];
+		int position = 0;
+		for (int y = 0; y < height; y++) {
+			int rowStart = y * width;
+			for (int x = 0; x < width; x++) {
+				text[position++] = characters[characterIndexes[rowStart + x] & 0xFFFF];
+			}
+			System.arraycopy(lineSeparator, 0, text, position,
+					lineSeparator.length);
+			position += lineSeparator.length;
+		}
+
+		return text;
+	}
+
+	/**
+	 * Empties an existing string buffer and makes room for the whole ascii
+	 * art;
+	 * 
+	 * @see io.korhner.asciimg.image.converter.AsciiConverter#resetOutput(Object,
+	 *      int, int)
+	 */
+	@Override
+	protected void resetOutput(final StringBuffer output,
+			final int imageWidth, final int imageHeight) {
+		Dimension tileSize = this.characterCache.getCharacterImageSize();
+		output.setLength(0);
+		output.ensureCapacity(getTextLength(imageWidth / tileSize.width,
+				imageHeight / tileSize.height));
+	}
+
+	/**
+	 * Writes the ascii art of an image to an appendable as it is matched,
+	 * see {@link #writeImage(PixelSource, Appendable)}.
+	 *
+	 * @param source
+	 *            the source
+	 * @param destination
+	 *            the destination
+	 * @throws IOException
+	 *             if the destination can not be written
+	 */
+	public void writeImage(final BufferedImage source,
+			final Appendable destination) throws IOException {
+		writeImage(new BufferedImagePixelSource(source), destination);
+	}
+
+	/**
+	 * Writes the ascii art of a pixel source to an appendable as it is
+	 * matched. The source is read in bands of whole tile rows, and each line
+	 * of text is written as soon as its band is matched, so the whole text is
+	 * never held in memory. A destination that is {@link Flushable} is
+	 * flushed after every band. The destination is not closed.
+	 *
+	 * @param source
+	 *            the pixel source
+	 * @param destination
+	 *            the destination
+	 * @throws IOException
+	 *             if the pixels can not be read or the destination can not be
+	 *             written
+	 * @see ConverterSettings.Builder#setStreamingBandRows(int)
+	 */
+	public void writeImage(final PixelSource source,
+			final Appendable destination) throws IOException {
+		final int tilesX = source.getWidth()
+				/ this.characterCache.getCharacterImageSize().width;
+		final char[] characters = getCharacters(this.characterCache);
+		final char[] lineSeparator = System.lineSeparator().toCharArray();
+
+		// a single line of text is buffered at a time
+		final char[] line = new char[getTextLength(tilesX, 1)];
+		System.arraycopy(lineSeparator, 0, line, tilesX, lineSeparator.length);
+		final CharBuffer lineBuffer = CharBuffer.wrap(line);
+
+		try {
+			matchBands(source, this.streamingBandRows,
+					new ObjIntConsumer<int[]>() {
+						@Override
+						public void accept(final int[] bestFits,
+								final int firstTileY) {
+							try {
+								for (int start = 0; start < bestFits.length; start += tilesX) {
+									for (int x = 0; x < tilesX; x++) {
+										line[x] = characters[bestFits[start + x]];
+									}
+									if (destination instanceof Writer) {
+										((Writer) destination).write(line);
+									} else {
+										lineBuffer.rewind();
+										destination.append(lineBuffer);
+									}
+								}
+
+								if (destination instanceof Flushable) {
+									((Flushable) destination).flush();
+								}
+							} catch (IOException e) {
+								throw new UncheckedIOException(e);
+							}
+						}
+					});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
 		}
+	}
 
+	/**
+	 * Writes the ascii art of a pixel source to a byte channel as it is
+	 * matched, see {@link #writeImage(PixelSource, Appendable)}. Characters
+	 * are encoded through a bounded buffer that is written out after every
+	 * band. The channel is not closed.
+	 *
+	 * @param source
+	 *            the pixel source
+	 * @param destination
+	 *            the destination channel
+	 * @param charset
+	 *            the charset used to encode the text
+	 * @throws IOException
+	 *             if the pixels can not be read or the channel can not be
+	 *             written
+	 */
+	public void writeImage(final PixelSource source,
+			final WritableByteChannel destination, final Charset charset)
+			throws IOException {
+		// closing the writer would close the channel, flushing is enough
+		writeImage(source, Channels.newWriter(destination,
+				charset.newEncoder(), -1));
 	}
 
+	/**
+	 * Existing string buffers are emptied and reused.
+	 *
+	 * @see io.korhner.asciimg.image.converter.AsciiConverter#supportsExistingOutput()
+	 */
+	@Override
+	public boolean supportsExistingOutput() {
+		return true;
+	}
 }
@@ -0,0 +1,43 @@
+package io.korhner.asciimg.image.converter;
+
+import io.korhner.asciimg.image.matrix.GrayscaleRasterReader;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Reads pixels of an image in memory, directly from its raster where
+ * possible.
+ *
+ * @see GrayscaleRasterReader
+ */
+public class BufferedImagePixelSource implements PixelSource {
+
+	/** Reader of the image. */
+	private final GrayscaleRasterReader reader;
+
+	/**
+	 * Instantiates a new pixel source of an image.
+	 *
+	 * @param image
+	 *            the image
+	 */
+	public BufferedImagePixelSource(final BufferedImage image) {
+		this.reader = new GrayscaleRasterReader(image);
+	}
+
+	@Override
+	public int getHeight() {
+		return this.reader.getImage().getHeight();
+	}
+
+	@Override
+	public int getWidth() {
+		return this.reader.getImage().getWidth();
+	}
+
+	@Override
+	public void readRow(final int y, final int width,
+			final float[] destination, final int destinationOffset) {
+		this.reader.readRow(y, width, destination, destinationOffset);
+	}
+}
@@ -0,0 +1,165 @@
+package io.korhner.asciimg.image.converter;
+
+import io.korhner.asciimg.image.AsciiImgCache;
+
+import java.awt.Dimension;
+
+/**
+ * The result of matching an image: the cache index of the best fit character
+ * of each tile, in a grid of tiles stored row by row. Indexes are kept as
+ * unsigned shorts, so caches of up to 65536 characters are supported.
+ *
+ * A grid is independent of any output, and can be rendered by every converter
+ * using the same character cache with {@link AsciiConverter#render}.
+ */
+public class CharacterGrid {
+
+	/** Largest number of characters a cache used with a grid can hold. */
+	public static final int MAX_CHARACTER_COUNT = 1 << 16;
+
+	/** The character cache the indexes refer to. */
+	private final AsciiImgCache characterCache;
+
+	/** Character cache indexes as unsigned shorts. */
+	private final short[] characterIndexes;
+
+	/** Number of tiles on x axis. */
+	private final int width;
+
+	/** Number of tiles on y axis. */
+	private final int height;
+
+	/**
+	 * Instantiates a new grid with all tiles set to the first character.
+	 *
+	 * @param characterCache
+	 *            the character cache the indexes refer to
+	 * @param width
+	 *            number of tiles on x axis
+	 * @param height
+	 *            number of tiles on y axis
+	 */
+	public CharacterGrid(final AsciiImgCache characterCache, final int width,
+			final int height) {
+		if (characterCache.getCharacterCount() > MAX_CHARACTER_COUNT) {
+			throw new IllegalArgumentException(
+					"Character cache has too many characters!");
+		}
+
+		if (width < 0 || height < 0) {
+			throw new IllegalArgumentException("Illegal grid size!");
+		}
+
+		this.characterCache = characterCache;
+		this.width = width;
+		this.height = height;
+		this.characterIndexes = new short[width * height];
+	}
+
+	/**
+	 * Gets the character of a tile.
+	 *
+	 * @param x
+	 *            tile x
+	 * @param y
+	 *            tile y
+	 * @return the character
+	 */
+	public char getCharacter(final int x, final int y) {
+		return this.characterCache.getCharacter(getCharacterIndex(x, y));
+	}
+
+	/**
+	 * Gets the character cache the indexes refer to.
+	 *
+	 * @return the character cache
+	 */
+	public AsciiImgCache getCharacterCache() {
+		return this.characterCache;
+	}
+
+	/**
+	 * Gets the cache index of the character of a tile.
+	 *
+	 * @param x
+	 *            tile x
+	 * @param y
+	 *            tile y
+	 * @return cache index of the character
+	 */
+	public int getCharacterIndex(final int x, final int y) {
+		return this.characterIndexes[getTileIndex(x, y)] & 0xFFFF;
+	}
+
+	/**
+	 * Gets a reference to the character indexes, stored row by row. Values
+	 * are unsigned, read them with {@code indexes[i] & 0xFFFF}.
+	 *
+	 * @return the character indexes
+	 */
+	public short[] getCharacterIndexes() {
+		return this.characterIndexes;
+	}
+
+	/**
+	 * Gets the number of tiles on y axis.
+	 *
+	 * @return the height
+	 */
+	public int getHeight() {
+		return this.height;
+	}
+
+	/**
+	 * Gets the index of a tile in the character indexes.
+	 *
+	 * @param x
+	 *            tile x
+	 * @param y
+	 *            tile y
+	 * @return the tile index
+	 */
+	private int getTileIndex(final int x, final int y) {
+		if (x < 0 || y < 0 || x >= this.width || y >= this.height) {
+			throw new IndexOutOfBoundsException("Illegal tile position!");
+		}
+		return y * this.width + x;
+	}
+
+	/**
+	 * Gets the dimension of each tile, the character image size of the cache.
+	 *
+	 * @return the tile size
+	 */
+	public Dimension getTileSize() {
+		return this.characterCache.getCharacterImageSize();
+	}
+
+	/**
+	 * Gets the number of tiles on x axis.
+	 *
+	 * @return the width
+	 */
+	public int getWidth() {
+		return this.width;
+	}
+
+	/**
+	 * Sets the cache index of the character of a tile.
+	 *
+	 * @param x
+	 *            tile x
+	 * @param y
+	 *            tile y
+	 * @param characterIndex
+	 *            cache index of the character
+	 */
+	public void setCharacterIndex(final int x, final int y,
+			final int characterIndex) {
+		if (characterIndex < 0
+				|| characterIndex >= this.characterCache.getCharacterCount()) {
+			throw new IllegalArgumentException("Illegal character index!");
+		}
+		this.characterIndexes[getTileIndex(x, y)] = (short) characterIndex;
+	}
+}
@@ -0,0 +1,66 @@
+package io.korhner.asciimg.image.converter;
+
+/**
+ * State of a single conversion: the output being filled and the size of the
+ * ascii art. Every conversion gets its own context, so converters themselves
+ * hold no state of a conversion and can convert images on many threads at
+ * once.
+ *
+ * @param <Output>
+ *            output type of the ascii art
+ */
+public class ConversionContext<Output> {
+
+	/** The output. */
+	private final Output output;
+
+	/** Output image width, a multiple of the tile width. */
+	private final int imageWidth;
+
+	/** Output image height, a multiple of the tile height. */
+	private final int imageHeight;
+
+	/**
+	 * Instantiates a new conversion context.
+	 *
+	 * @param output
+	 *            the output
+	 * @param imageWidth
+	 *            output image width
+	 * @param imageHeight
+	 *            output image height
+	 */
+	public ConversionContext(final Output output, final int imageWidth,
+			final int imageHeight) {
+		this.output = output;
+		this.imageWidth = imageWidth;
+		this.imageHeight = imageHeight;
+	}
+
+	/**
+	 * Gets the output image height.
+	 *
+	 * @return the image height
+	 */
+	public int getImageHeight() {
+		return this.imageHeight;
+	}
+
+	/**
+	 * Gets the output image width.
+	 *
+	 * @return the image width
+	 */
+	public int getImageWidth() {
+		return this.imageWidth;
+	}
+
+	/**
+	 * Gets the output.
+	 *
+	 * @return the output
+	 */
+	public Output getOutput() {
+		return this.output;
+	}
+}
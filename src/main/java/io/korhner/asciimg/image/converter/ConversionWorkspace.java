@@ -0,0 +1,122 @@
+package io.korhner.asciimg.image.converter;
+
+import io.korhner.asciimg.image.matrix.ByteGrayscaleMatrix;
+import io.korhner.asciimg.image.matrix.GrayscaleMatrix;
+
+/**
+ * Scratch buffers reused by repeated conversions, such as the frames of a
+ * video. Each buffer is kept for the size it was last used with, so
+ * converting images of equal size with equal tile size allocates no new
+ * buffers after the first conversion. A buffer of a different size replaces
+ * the one kept.
+ *
+ * A workspace is not thread safe. Use one workspace per thread, the converter
+ * itself can be shared.
+ *
+ * @see AsciiConverter#convertImage(java.awt.image.BufferedImage,
+ *      ConversionWorkspace)
+ */
+public class ConversionWorkspace {
+
+	/** Source matrix, or null. */
+	private GrayscaleMatrix matrix;
+
+	/** 8-bit source matrix, or null. */
+	private ByteGrayscaleMatrix byteMatrix;
+
+	/** Single row of gray levels, or null. */
+	private float[] row;
+
+	/** Cache index of the best fit character for each tile, or null. */
+	private int[] bestFits;
+
+	/** Number of buffers allocated so far. */
+	private long allocationCount;
+
+	/**
+	 * Releases all buffers, so they can be garbage collected.
+	 */
+	public void clear() {
+		this.matrix = null;
+		this.byteMatrix = null;
+		this.row = null;
+		this.bestFits = null;
+	}
+
+	/**
+	 * Gets the number of buffers allocated so far. The count stops growing
+	 * once all buffers fit the converted images.
+	 *
+	 * @return the allocation count
+	 */
+	public long getAllocationCount() {
+		return this.allocationCount;
+	}
+
+	/**
+	 * Gets an array for the best fit characters of a number of tiles.
+	 *
+	 * @param tileCount
+	 *            number of tiles
+	 * @return array of exactly tileCount elements
+	 */
+	int[] getBestFits(final int tileCount) {
+		if (this.bestFits == null || this.bestFits.length != tileCount) {
+			this.bestFits = new int[tileCount];
+			this.allocationCount++;
+		}
+		return this.bestFits;
+	}
+
+	/**
+	 * Gets an 8-bit matrix of a size. Its pixels are left from the previous
+	 * use.
+	 *
+	 * @param width
+	 *            matrix width
+	 * @param height
+	 *            matrix height
+	 * @return the matrix
+	 */
+	ByteGrayscaleMatrix getByteMatrix(final int width, final int height) {
+		if (this.byteMatrix == null || this.byteMatrix.getWidth() != width
+				|| this.byteMatrix.getHeight() != height) {
+			this.byteMatrix = new ByteGrayscaleMatrix(width, height);
+			this.allocationCount++;
+		}
+		return this.byteMatrix;
+	}
+
+	/**
+	 * Gets a matrix of a size. Its pixels are left from the previous use.
+	 *
+	 * @param width
+	 *            matrix width
+	 * @param height
+	 *            matrix height
+	 * @return the matrix
+	 */
+	GrayscaleMatrix getMatrix(final int width, final int height) {
+		if (this.matrix == null || this.matrix.getWidth() != width
+				|| this.matrix.getHeight() != height) {
+			this.matrix = new GrayscaleMatrix(width, height);
+			this.allocationCount++;
+		}
+		return this.matrix;
+	}
+
+	/**
+	 * Gets an array for a row of gray levels.
+	 *
+	 * @param width
+	 *            row width
+	 * @return array of at least width elements
+	 */
+	float[] getRow(final int width) {
+		if (this.row == null || this.row.length < width) {
+			this.row = new float[width];
+			this.allocationCount++;
+		}
+		return this.row;
+	}
+}
@@ -0,0 +1,344 @@
+package io.korhner.asciimg.image.converter;
+
+import io.korhner.asciimg.image.character_fit_strategy.ByteCharacterFitStrategy;
+import io.korhner.asciimg.image.character_fit_strategy.StatisticalCharacterFitStrategy;
+import io.korhner.asciimg.image.character_index.CharacterIndex;
+import io.korhner.asciimg.image.matrix.DirectGrayscaleMatrixPool;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Settings of a converter that tune how tiles are matched. Settings are
+ * immutable and given to a converter when it is created, so a converter can
+ * be shared by many threads without any of them changing how the others
+ * convert. Create settings with a {@link Builder}.
+ *
+ * @see AsciiConverter#AsciiConverter(io.korhner.asciimg.image.AsciiImgCache,
+ *      io.korhner.asciimg.image.character_fit_strategy.BestCharacterFitStrategy,
+ *      ConverterSettings)
+ */
+public class ConverterSettings {
+
+	/**
+	 * Builds converter settings. A builder is not thread safe, the settings
+	 * it builds are.
+	 */
+	public static class Builder {
+
+		/** The character index, or null. */
+		private CharacterIndex characterIndex;
+
+		/** The executor service, or null. */
+		private ExecutorService executorService;
+
+		/** The matrix pool, or null. */
+		private DirectGrayscaleMatrixPool matrixPool;
+
+		/** Number of tiles matched by a single parallel task. */
+		private int parallelChunkSize = AsciiConverter.DEFAULT_PARALLEL_CHUNK_SIZE;
+
+		/** Largest number of bands of sequential image readers, or 0. */
+		private int sequentialBandCount;
+
+		/** Number of tile rows read at once by streaming conversion. */
+		private int streamingBandRows = AsciiConverter.DEFAULT_STREAMING_BAND_ROWS;
+
+		/** Whether a summed-area table is built for statistical strategies. */
+		private boolean summedAreaTableEnabled;
+
+		/** The tile match cache, or null. */
+		private TileMatchCache tileMatchCache;
+
+		/**
+		 * Instantiates a new builder with default settings.
+		 */
+		public Builder() {
+		}
+
+		/**
+		 * Instantiates a new builder with the values of existing settings.
+		 *
+		 * @param settings
+		 *            the settings to start from
+		 */
+		public Builder(final ConverterSettings settings) {
+			this.characterIndex = settings.characterIndex;
+			this.executorService = settings.executorService;
+			this.matrixPool = settings.matrixPool;
+			this.parallelChunkSize = settings.parallelChunkSize;
+			this.sequentialBandCount = settings.sequentialBandCount;
+			this.streamingBandRows = settings.streamingBandRows;
+			this.summedAreaTableEnabled = settings.summedAreaTableEnabled;
+			this.tileMatchCache = settings.tileMatchCache;
+		}
+
+		/**
+		 * Builds the settings.
+		 *
+		 * @return the settings
+		 */
+		public ConverterSettings build() {
+			return new ConverterSettings(this);
+		}
+
+		/**
+		 * Sets the index used to find best fit characters. The index replaces
+		 * the search with the character fit strategy, so it should search by
+		 * the same metric. It must be built for the character cache of the
+		 * converter.
+		 *
+		 * @param characterIndex
+		 *            the character index, or null to compare each tile to
+		 *            every character
+		 * @return this builder
+		 */
+		public Builder setCharacterIndex(final CharacterIndex characterIndex) {
+			this.characterIndex = characterIndex;
+			return this;
+		}
+
+		/**
+		 * Sets the executor service used to match tiles in parallel. Pass
+		 * {@link java.util.concurrent.ForkJoinPool#commonPool()} for fork-join
+		 * matching, or null to match sequentially. The executor is not shut
+		 * down by the converter. The character fit strategy must be thread
+		 * safe when an executor is used.
+		 *
+		 * @param executorService
+		 *            the executor service, or null
+		 * @return this builder
+		 */
+		public Builder setExecutorService(final ExecutorService executorService) {
+			this.executorService = executorService;
+			return this;
+		}
+
+		/**
+		 * Sets the pool of direct memory used for source matrices. Each band
+		 * of the source is read into a pooled matrix outside of the Java heap,
+		 * and only the tiles being matched are copied to the heap. The pool
+		 * can be shared between converters. Not used with a
+		 * {@link ByteCharacterFitStrategy}, whose 8-bit matrices are already a
+		 * quarter of the size.
+		 *
+		 * @param matrixPool
+		 *            the matrix pool, or null to keep source matrices on the
+		 *            heap
+		 * @return this builder
+		 */
+		public Builder setMatrixPool(final DirectGrayscaleMatrixPool matrixPool) {
+			this.matrixPool = matrixPool;
+			return this;
+		}
+
+		/**
+		 * Sets the number of tiles matched by a single parallel task.
+		 *
+		 * @param parallelChunkSize
+		 *            the parallel chunk size
+		 * @return this builder
+		 */
+		public Builder setParallelChunkSize(final int parallelChunkSize) {
+			if (parallelChunkSize <= 0) {
+				throw new IllegalArgumentException("Illegal chunk size!");
+			}
+			this.parallelChunkSize = parallelChunkSize;
+			return this;
+		}
+
+		/**
+		 * Sets the largest number of bands an image reader without random
+		 * access to rows, such as a PNG reader, is read in. Such readers
+		 * decode from the start of the image for every band, so reading in
+		 * bands of the streaming band rows takes time quadratic in the image
+		 * height. Bounding the number of bands makes the time linear, but
+		 * reads bands of up to the image height divided by the count, so
+		 * memory then grows with the image height.
+		 *
+		 * @param sequentialBandCount
+		 *            the largest band count, or 0 to always read bands of the
+		 *            streaming band rows
+		 * @return this builder
+		 * @see ImageReaderPixelSource#getBandHeight(javax.imageio.ImageReader,
+		 *      int, int)
+		 */
+		public Builder setSequentialBandCount(final int sequentialBandCount) {
+			if (sequentialBandCount < 0) {
+				throw new IllegalArgumentException("Illegal band count!");
+			}
+			this.sequentialBandCount = sequentialBandCount;
+			return this;
+		}
+
+		/**
+		 * Sets the number of tile rows read and matched at once by streaming
+		 * conversion. Taller bands use more memory but fewer reads.
+		 *
+		 * @param streamingBandRows
+		 *            the streaming band rows
+		 * @return this builder
+		 */
+		public Builder setStreamingBandRows(final int streamingBandRows) {
+			if (streamingBandRows <= 0) {
+				throw new IllegalArgumentException("Illegal band size!");
+			}
+			this.streamingBandRows = streamingBandRows;
+			return this;
+		}
+
+		/**
+		 * Sets whether a summed-area table of the source image is built to
+		 * get the statistics of each tile in constant time. Only used with a
+		 * {@link StatisticalCharacterFitStrategy} that
+		 * {@link StatisticalCharacterFitStrategy#usesTileVariance() uses the
+		 * tile variance}, no character index and no tile match cache, so it
+		 * does nothing for a
+		 * {@link io.korhner.asciimg.image.character_fit_strategy.ColorSquareErrorFitStrategy}
+		 * . The table takes 16 bytes per source pixel and is rebuilt for every
+		 * band of the source.
+		 *
+		 * @param summedAreaTableEnabled
+		 *            true to build a summed-area table
+		 * @return this builder
+		 */
+		public Builder setSummedAreaTableEnabled(
+				final boolean summedAreaTableEnabled) {
+			this.summedAreaTableEnabled = summedAreaTableEnabled;
+			return this;
+		}
+
+		/**
+		 * Sets the cache used to reuse best fit characters of repeated tiles.
+		 * With an exact cache the output is the same as without one. Tiles
+		 * are then matched from their pixels only, without a summed-area
+		 * table.
+		 *
+		 * @param tileMatchCache
+		 *            the tile match cache, or null to match every tile
+		 * @return this builder
+		 */
+		public Builder setTileMatchCache(final TileMatchCache tileMatchCache) {
+			this.tileMatchCache = tileMatchCache;
+			return this;
+		}
+	}
+
+	/** Default settings: sequential matching on the heap, with no caches. */
+	public static final ConverterSettings DEFAULT = new Builder().build();
+
+	/** The character index, or null. */
+	private final CharacterIndex characterIndex;
+
+	/** The executor service, or null. */
+	private final ExecutorService executorService;
+
+	/** The matrix pool, or null. */
+	private final DirectGrayscaleMatrixPool matrixPool;
+
+	/** Number of tiles matched by a single parallel task. */
+	private final int parallelChunkSize;
+
+	/** Largest number of bands of sequential image readers, or 0. */
+	private final int sequentialBandCount;
+
+	/** Number of tile rows read at once by streaming conversion. */
+	private final int streamingBandRows;
+
+	/** Whether a summed-area table is built for statistical strategies. */
+	private final boolean summedAreaTableEnabled;
+
+	/** The tile match cache, or null. */
+	private final TileMatchCache tileMatchCache;
+
+	/**
+	 * Instantiates new settings with the values of a builder.
+	 *
+	 * @param builder
+	 *            the builder
+	 */
+	private ConverterSettings(final Builder builder) {
+		this.characterIndex = builder.characterIndex;
+		this.executorService = builder.executorService;
+		this.matrixPool = builder.matrixPool;
+		this.parallelChunkSize = builder.parallelChunkSize;
+		this.sequentialBandCount = builder.sequentialBandCount;
+		this.streamingBandRows = builder.streamingBandRows;
+		this.summedAreaTableEnabled = builder.summedAreaTableEnabled;
+		this.tileMatchCache = builder.tileMatchCache;
+	}
+
+	/**
+	 * Gets the character index.
+	 *
+	 * @return the character index, or null if the character fit strategy is
+	 *         used to compare each tile to every character
+	 */
+	public CharacterIndex getCharacterIndex() {
+		return this.characterIndex;
+	}
+
+	/**
+	 * Gets the executor service used for parallel tile matching.
+	 *
+	 * @return the executor service, or null if matching is sequential
+	 */
+	public ExecutorService getExecutorService() {
+		return this.executorService;
+	}
+
+	/**
+	 * Gets the pool of direct memory for source matrices.
+	 *
+	 * @return the matrix pool, or null if source matrices are on the heap
+	 */
+	public DirectGrayscaleMatrixPool getMatrixPool() {
+		return this.matrixPool;
+	}
+
+	/**
+	 * Gets the number of tiles matched by a single parallel task.
+	 *
+	 * @return the parallel chunk size
+	 */
+	public int getParallelChunkSize() {
+		return this.parallelChunkSize;
+	}
+
+	/**
+	 * Gets the largest number of bands an image reader without random access
+	 * to rows is read in.
+	 *
+	 * @return the sequential band count, or 0 if bands always have the
+	 *         streaming band rows
+	 */
+	public int getSequentialBandCount() {
+		return this.sequentialBandCount;
+	}
+
+	/**
+	 * Gets the number of tile rows read at once by streaming conversion.
+	 *
+	 * @return the streaming band rows
+	 */
+	public int getStreamingBandRows() {
+		return this.streamingBandRows;
+	}
+
+	/**
+	 * Gets the tile match cache.
+	 *
+	 * @return the tile match cache, or null if tiles are always matched
+	 */
+	public TileMatchCache getTileMatchCache() {
+		return this.tileMatchCache;
+	}
+
+	/**
+	 * Checks whether tile statistics are read from a summed-area table.
+	 *
+	 * @return true if a summed-area table is built for statistical strategies
+	 */
+	public boolean isSummedAreaTableEnabled() {
+		return this.summedAreaTableEnabled;
+	}
+}
@@ -5,14 +5,51 @@ import io.korhner.asciimg.image.character_fit_strategy.BestCharacterFitStrategy;
 import io.korhner.asciimg.utils.AnimatedGifEncoder;
 import io.korhner.asciimg.utils.GifDecoder;
 
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
 public class GifToAsciiConvert extends AsciiToImageConverter{
 
+	/** Marks the end of the decoded frames in a pipeline queue. */
+	private static final Future<BufferedImage> END_OF_FRAMES = new FutureTask<>(
+			new Callable<BufferedImage>() {
+				@Override
+				public BufferedImage call() {
+					return null;
+				}
+			});
+
 	public GifToAsciiConvert(AsciiImgCache characterCacher,
 			BestCharacterFitStrategy characterFitStrategy) {
 		super(characterCacher, characterFitStrategy);
 	}
+
+	public GifToAsciiConvert(AsciiImgCache characterCacher,
+			BestCharacterFitStrategy characterFitStrategy,
+			ConverterSettings settings) {
+		super(characterCacher, characterFitStrategy, settings);
+	}
 	
 	/**
+	 * Converts each frame as soon as it is decoded, so only the frames needed
+	 * for disposal are kept in memory whatever the frame count. Frames are
+	 * encoded to a temporary file that replaces the destination only once the
+	 * whole source is converted, so the destination is left untouched if the
+	 * source can not be read.
 	 * 
 	 * @param srcFilePath
 	 * @param disFilePath
@@ -21,26 +58,284 @@ public class GifToAsciiConvert extends AsciiToImageConverter{
 	 * @return
 	 */
 	public int  convertGitToAscii(String srcFilePath,String disFilePath,int delay,int repeat){
-		GifDecoder decoder = new GifDecoder();
-		int status = decoder.read(srcFilePath);
-		if(status!=0){
-			return -1;//srcfile not exist or open failed!
-		}
-		AnimatedGifEncoder e = new AnimatedGifEncoder();
-		boolean openStatus = e.start(disFilePath);
-		if(openStatus){
+		final File temporaryFile = createTemporaryFile(disFilePath);
+		if(temporaryFile==null){
+			return 0;//open disfile failed!
+		}
+		final AnimatedGifEncoder e = new AnimatedGifEncoder();
+		try{
+			if(!e.start(temporaryFile.getPath())){
+				return 0;//open disfile failed!
+			}
 			e.setDelay(delay);   // 1 frame per delay(ms)
 			e.setRepeat(repeat);
-			// initialize converters
-			int frameCount = decoder.getFrameCount();
-			for(int i=0;i<frameCount;i++){
-				//convert per frame
-				e.addFrame(this.convertImage(decoder.getFrame(i)));
+			GifDecoder decoder = new GifDecoder();
+			int status = decoder.read(srcFilePath, new GifDecoder.FrameHandler() {
+				@Override
+				public void handleFrame(int index, BufferedImage frame, int frameDelay) {
+					//convert per frame
+					e.addFrame(convertImage(frame));
+				}
+			});
+			if(status!=0){
+				return -1;//srcfile not exist or open failed!
+			}
+			if(!e.finish() || !replaceFile(temporaryFile, disFilePath)){
+				return 0;//write disfile failed!
 			}
-			e.finish();
 			return 1;//done!
+		}finally{
+			// closes the temporary file if converting failed
+			e.finish();
+			deleteFile(temporaryFile);
 		}
-		return 0;//open disfile failed!
 	};
-	
+
+	/**
+	 * Converts a GIF in a pipeline of three stages that run at the same time:
+	 * a decoder thread, a pool of threads converting frames, and the calling
+	 * thread encoding converted frames in their original order. Decoded
+	 * frames wait in a bounded queue, so the decoder blocks when the
+	 * converters or the encoder fall behind, and at most queueCapacity frames
+	 * are in flight at once.
+	 *
+	 * @param srcFilePath
+	 *            source GIF file or URL
+	 * @param disFilePath
+	 *            destination GIF file
+	 * @param delay
+	 *            the delay time(ms) between each frame
+	 * @param repeat
+	 *            the number of times the set of GIF frames should be played.
+	 *            0 means play indefinitely.
+	 * @param converterThreads
+	 *            number of threads converting frames
+	 * @param queueCapacity
+	 *            number of decoded frames waiting to be encoded at most
+	 * @return 1 when done, 0 if the destination can not be written and -1 if
+	 *         the source can not be read
+	 * @see #convertGitToAscii(String, String, int, int)
+	 */
+	public int convertGitToAscii(final String srcFilePath,
+			final String disFilePath, final int delay, final int repeat,
+			final int converterThreads, final int queueCapacity) {
+		if (converterThreads <= 0) {
+			throw new IllegalArgumentException("Illegal thread count!");
+		}
+
+		if (queueCapacity <= 0) {
+			throw new IllegalArgumentException("Illegal queue capacity!");
+		}
+
+		// the destination is replaced once the whole source is converted
+		final File temporaryFile = createTemporaryFile(disFilePath);
+		if (temporaryFile == null) {
+			return 0;
+		}
+
+		final AnimatedGifEncoder encoder = new AnimatedGifEncoder();
+		if (!encoder.start(temporaryFile.getPath())) {
+			deleteFile(temporaryFile);
+			return 0;
+		}
+		encoder.setDelay(delay);
+		encoder.setRepeat(repeat);
+
+		// frames in decoding order, each converted by the time it is taken
+		final BlockingQueue<Future<BufferedImage>> frames = new ArrayBlockingQueue<>(
+				queueCapacity);
+
+		final ExecutorService converters = Executors
+				.newFixedThreadPool(converterThreads);
+		final ExecutorService decoderThread = Executors
+				.newSingleThreadExecutor();
+
+		// every converter thread reuses its own scratch buffers
+		final ThreadLocal<ConversionWorkspace> workspaces = new ThreadLocal<ConversionWorkspace>() {
+			@Override
+			protected ConversionWorkspace initialValue() {
+				return new ConversionWorkspace();
+			}
+		};
+
+		try {
+			Future<Integer> decoding = decoderThread
+					.submit(new Callable<Integer>() {
+						@Override
+						public Integer call() throws InterruptedException {
+							try {
+								return new GifDecoder().read(srcFilePath,
+										new GifDecoder.FrameHandler() {
+											@Override
+											public void handleFrame(
+													final int index,
+													final BufferedImage frame,
+													final int frameDelay) {
+												enqueueFrame(frames,
+														converters, workspaces,
+														frame);
+											}
+										});
+							} finally {
+								frames.put(END_OF_FRAMES);
+							}
+						}
+					});
+
+			// encode in decoding order while later frames are converted
+			Future<BufferedImage> frame = frames.take();
+			while (frame != END_OF_FRAMES) {
+				encoder.addFrame(frame.get());
+				frame = frames.take();
+			}
+
+			if (decoding.get() != GifDecoder.STATUS_OK) {
+				return -1;
+			}
+			if (!encoder.finish() || !replaceFile(temporaryFile, disFilePath)) {
+				return 0;
+			}
+			return 1;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Gif conversion interrupted!", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException("Gif conversion failed!",
+					e.getCause());
+		} finally {
+			// stops the other stages if encoding failed, and waits for them,
+			// so no frame is decoded or converted once this returns
+			decoderThread.shutdownNow();
+			converters.shutdownNow();
+			awaitTermination(decoderThread);
+			awaitTermination(converters);
+
+			// closes the temporary file if encoding failed
+			encoder.finish();
+			deleteFile(temporaryFile);
+		}
+	}
+
+	/**
+	 * Waits until an executor that is shut down has terminated. An interrupt
+	 * does not stop the wait, it is kept for the caller.
+	 *
+	 * @param executor
+	 *            the executor
+	 */
+	private static void awaitTermination(final ExecutorService executor) {
+		boolean interrupted = false;
+		while (true) {
+			try {
+				if (executor.awaitTermination(Long.MAX_VALUE,
+						TimeUnit.NANOSECONDS)) {
+					break;
+				}
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Creates an empty temporary file in the directory of a destination file,
+	 * so it can replace the destination by renaming.
+	 *
+	 * @param disFilePath
+	 *            destination file
+	 * @return the temporary file, or null if it can not be created
+	 */
+	private static File createTemporaryFile(final String disFilePath) {
+		File destination = new File(disFilePath).getAbsoluteFile();
+		try {
+			return File.createTempFile("." + destination.getName() + ".",
+					".tmp", destination.getParentFile());
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Deletes a file if it still exists.
+	 *
+	 * @param file
+	 *            the file
+	 */
+	private static void deleteFile(final File file) {
+		try {
+			Files.deleteIfExists(file.toPath());
+		} catch (IOException e) {
+			// a leftover temporary file does no harm
+		}
+	}
+
+	/**
+	 * Replaces a destination file by a finished temporary file, atomically if
+	 * the file system supports it.
+	 *
+	 * @param temporaryFile
+	 *            the temporary file
+	 * @param disFilePath
+	 *            destination file
+	 * @return true if the destination was replaced
+	 */
+	private static boolean replaceFile(final File temporaryFile,
+			final String disFilePath) {
+		Path destination = new File(disFilePath).toPath();
+		try {
+			try {
+				Files.move(temporaryFile.toPath(), destination,
+						StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporaryFile.toPath(), destination,
+						StandardCopyOption.REPLACE_EXISTING);
+			}
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Queues a decoded frame, then starts converting it. Blocks while the
+	 * queue is full.
+	 *
+	 * @param frames
+	 *            queue of frames in decoding order
+	 * @param converters
+	 *            executor converting frames
+	 * @param workspaces
+	 *            workspace of each converter thread
+	 * @param frame
+	 *            the decoded frame
+	 */
+	private void enqueueFrame(final BlockingQueue<Future<BufferedImage>> frames,
+			final ExecutorService converters,
+			final ThreadLocal<ConversionWorkspace> workspaces,
+			final BufferedImage frame) {
+		FutureTask<BufferedImage> conversion = new FutureTask<>(
+				new Callable<BufferedImage>() {
+					@Override
+					public BufferedImage call() {
+						return convertImage(frame, workspaces.get());
+					}
+				});
+
+		try {
+			frames.put(conversion);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Gif decoding interrupted!", e);
+		}
+		converters.execute(conversion);
+	}
+
 }
@@ -0,0 +1,185 @@
+package io.korhner.asciimg.image.converter;
+
+import io.korhner.asciimg.image.matrix.GrayscaleRasterReader;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+
+/**
+ * Reads pixels of the first image of an image reader in bands of rows, with
+ * {@link ImageReadParam#setSourceRegion}. Only the band containing the last
+ * row read is kept in memory, so memory used for reading is bounded by the
+ * band height regardless of the image height. Rows are best read from top to
+ * bottom, reading a row above the current band reads its band again.
+ *
+ * Readers of most formats, such as PNG, GIF and JPEG, decode from the start
+ * of the image for every band, so reading an image in bands of a fixed height
+ * takes time quadratic in its height. Use
+ * {@link #getBandHeight(ImageReader, int, int)} to trade memory for time by
+ * bounding the number of bands for such formats instead.
+ */
+public class ImageReaderPixelSource implements PixelSource {
+
+	/** The image reader. */
+	private final ImageReader reader;
+
+	/** Number of rows read at once. */
+	private final int bandHeight;
+
+	/** Image width. */
+	private final int width;
+
+	/** Image height. */
+	private final int height;
+
+	/** Reader of the current band, or null. */
+	private GrayscaleRasterReader band;
+
+	/** Y coordinate of the first row of the current band. */
+	private int bandStartY;
+
+	/**
+	 * Instantiates a new pixel source of an image reader.
+	 *
+	 * @param reader
+	 *            image reader with its input set
+	 * @param bandHeight
+	 *            number of rows read at once
+	 * @throws IOException
+	 *             if the image size can not be read
+	 */
+	public ImageReaderPixelSource(final ImageReader reader,
+			final int bandHeight) throws IOException {
+		if (bandHeight <= 0) {
+			throw new IllegalArgumentException("Illegal band size!");
+		}
+
+		this.reader = reader;
+		this.bandHeight = bandHeight;
+		this.width = reader.getWidth(0);
+		this.height = reader.getHeight(0);
+	}
+
+	/**
+	 * Chooses the band height for the first image of an image reader. Tiled
+	 * images and TIFF images can be read region by region, so they are always
+	 * read in bands of the requested height. Images of other formats are
+	 * decoded from their start for every band. If a largest band count is
+	 * given, their band height is raised until the image is read in at most
+	 * that many bands, which decodes about half as many rows as that count
+	 * times the image height, but keeps a band of up to the image height
+	 * divided by that count in memory. Either way, the band height is a
+	 * multiple of the requested one.
+	 *
+	 * @param reader
+	 *            image reader with its input set
+	 * @param bandHeight
+	 *            requested number of rows read at once
+	 * @param maxBandCount
+	 *            largest number of bands an image without random access to
+	 *            rows is read in, or 0 to always read bands of the requested
+	 *            height
+	 * @return number of rows to read at once
+	 * @throws IOException
+	 *             if the image can not be read
+	 */
+	public static int getBandHeight(final ImageReader reader,
+			final int bandHeight, final int maxBandCount) throws IOException {
+		if (bandHeight <= 0) {
+			throw new IllegalArgumentException("Illegal band size!");
+		}
+		if (maxBandCount < 0) {
+			throw new IllegalArgumentException("Illegal band count!");
+		}
+
+		if (maxBandCount == 0 || reader.isImageTiled(0) || isTiff(reader)) {
+			return bandHeight;
+		}
+
+		final int height = reader.getHeight(0);
+		final int sequentialBandHeight = (height + maxBandCount - 1)
+				/ maxBandCount;
+		if (sequentialBandHeight <= bandHeight) {
+			return bandHeight;
+		}
+
+		// round up to whole requested bands
+		return (sequentialBandHeight + bandHeight - 1) / bandHeight
+				* bandHeight;
+	}
+
+	/**
+	 * Checks whether a reader reads TIFF images, which are stored in strips
+	 * or tiles that can be read on their own.
+	 *
+	 * @param reader
+	 *            image reader
+	 * @return true if the reader reads TIFF images
+	 */
+	private static boolean isTiff(final ImageReader reader) {
+		if (reader.getOriginatingProvider() == null) {
+			return false;
+		}
+
+		for (String formatName : reader.getOriginatingProvider()
+				.getFormatNames()) {
+			if ("tif".equalsIgnoreCase(formatName)
+					|| "tiff".equalsIgnoreCase(formatName)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public int getHeight() {
+		return this.height;
+	}
+
+	@Override
+	public int getWidth() {
+		return this.width;
+	}
+
+	@Override
+	public void readRow(final int y, final int width,
+			final float[] destination, final int destinationOffset)
+			throws IOException {
+		if (this.band == null || y < this.bandStartY
+				|| y >= this.bandStartY + this.bandHeight) {
+			readBand(y);
+		}
+
+		this.band.readRow(y - this.bandStartY, width, destination,
+				destinationOffset);
+	}
+
+	/**
+	 * Reads the band starting at a row.
+	 *
+	 * @param startY
+	 *            y coordinate of the first row of the band
+	 * @throws IOException
+	 *             if the band can not be read
+	 */
+	private void readBand(final int startY) throws IOException {
+		if (startY < 0 || startY >= this.height) {
+			throw new IllegalArgumentException("Illegal row region!");
+		}
+
+		// drop the old band before reading the new one
+		this.band = null;
+
+		ImageReadParam param = this.reader.getDefaultReadParam();
+		param.setSourceRegion(new Rectangle(0, startY, this.width, Math.min(
+				this.bandHeight, this.height - startY)));
+		BufferedImage image = this.reader.read(0, param);
+
+		this.band = new GrayscaleRasterReader(image);
+		this.bandStartY = startY;
+	}
+}
@@ -0,0 +1,102 @@
+package io.korhner.asciimg.image.converter;
+
+import io.korhner.asciimg.image.matrix.ByteGrayscaleMatrix;
+import io.korhner.asciimg.image.matrix.GrayscaleMatrix;
+
+import java.io.IOException;
+
+/**
+ * A source of grayscale pixels that is read row by row. The converter only
+ * asks for the rows of the band it is matching, so a source does not have to
+ * hold the whole image in memory.
+ */
+public interface PixelSource {
+
+	/**
+	 * Gets the image height.
+	 *
+	 * @return the height
+	 */
+	int getHeight();
+
+	/**
+	 * Gets the image width.
+	 *
+	 * @return image width
+	 */
+	int getWidth();
+
+	/**
+	 * Reads a region of whole rows starting at the left edge to an 8-bit
+	 * matrix, rounding gray levels to whole values.
+	 *
+	 * @param startPixelY
+	 *            y coordinate of the first row
+	 * @param width
+	 *            region width
+	 * @param height
+	 *            region height
+	 * @return 8-bit matrix of the region
+	 * @throws IOException
+	 *             if the pixels can not be read
+	 */
+	default ByteGrayscaleMatrix readByteMatrix(final int startPixelY,
+			final int width, final int height) throws IOException {
+		ByteGrayscaleMatrix matrix = new ByteGrayscaleMatrix(width, height);
+		byte[] data = matrix.getData();
+		float[] row = new float[width];
+
+		for (int y = 0; y < height; y++) {
+			readRow(startPixelY + y, width, row, 0);
+			int rowStart = matrix.getIndex(0, y);
+			for (int x = 0; x < width; x++) {
+				data[rowStart + x] = (byte) Math.round(row[x]);
+			}
+		}
+
+		return matrix;
+	}
+
+	/**
+	 * Reads a region of whole rows starting at the left edge to a matrix.
+	 *
+	 * @param startPixelY
+	 *            y coordinate of the first row
+	 * @param width
+	 *            region width
+	 * @param height
+	 *            region height
+	 * @return matrix of the region
+	 * @throws IOException
+	 *             if the pixels can not be read
+	 */
+	default GrayscaleMatrix readMatrix(final int startPixelY, final int width,
+			final int height) throws IOException {
+		GrayscaleMatrix matrix = new GrayscaleMatrix(width, height);
+
+		for (int y = 0; y < height; y++) {
+			readRow(startPixelY + y, width, matrix.getData(),
+					matrix.getIndex(0, y));
+		}
+
+		return matrix;
+	}
+
+	/**
+	 * Reads the gray levels of the first pixels of a row. Gray levels are
+	 * between 0.0f and 255.0f.
+	 *
+	 * @param y
+	 *            row index
+	 * @param width
+	 *            number of pixels to read
+	 * @param destination
+	 *            array to store the gray levels to
+	 * @param destinationOffset
+	 *            index of the first gray level in the destination
+	 * @throws IOException
+	 *             if the row can not be read
+	 */
+	void readRow(final int y, final int width, final float[] destination,
+			final int destinationOffset) throws IOException;
+}
@@ -0,0 +1,320 @@
+package io.korhner.asciimg.image.converter;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Reads pixels of a binary PGM (P5) or PPM (P6) file through memory mappings
+ * of the file. Rows are converted straight from the mapped bytes, so the
+ * operating system page cache does the reading and the pixels never pass
+ * through ImageIO or the Java heap as a whole.
+ *
+ * Color pixels are converted to gray levels with the weights of
+ * {@link io.korhner.asciimg.image.matrix.GrayscaleMatrix}. Samples are scaled
+ * from the maximum value of the file to 255, and 16-bit samples are read big
+ * endian as the format specifies. Files larger than a single mapping are
+ * mapped in several parts of whole rows.
+ *
+ * Rows can be read on many threads at once. Close the source to release the
+ * mappings, rather than waiting for them to be garbage collected. Closing
+ * waits for rows being read.
+ */
+public class PortableAnymapPixelSource implements PixelSource, Closeable {
+
+	/** Largest number of bytes mapped at once. */
+	private static final int MAX_MAPPING_SIZE = 1 << 30;
+
+	/**
+	 * Reads a header token, skipping whitespace and comments before it.
+	 *
+	 * @param in
+	 *            header stream
+	 * @param position
+	 *            holds the number of bytes read so far, updated
+	 * @return the token
+	 * @throws IOException
+	 *             if the header is truncated
+	 */
+	private static String readToken(final InputStream in, final long[] position)
+			throws IOException {
+		StringBuilder token = new StringBuilder();
+		while (true) {
+			int b = in.read();
+			if (b < 0) {
+				throw new IOException("Truncated header!");
+			}
+			position[0]++;
+
+			if (b == '#' && token.length() == 0) {
+				// comments run to the end of the line
+				while (b != '\n' && b != '\r') {
+					b = in.read();
+					if (b < 0) {
+						throw new IOException("Truncated header!");
+					}
+					position[0]++;
+				}
+			} else if (Character.isWhitespace(b)) {
+				// a single whitespace character ends a token
+				if (token.length() > 0) {
+					return token.toString();
+				}
+			} else {
+				token.append((char) b);
+			}
+		}
+	}
+
+	/**
+	 * Reads a positive number from the header.
+	 *
+	 * @param in
+	 *            header stream
+	 * @param position
+	 *            holds the number of bytes read so far, updated
+	 * @return the number
+	 * @throws IOException
+	 *             if the header is truncated or the number is not valid
+	 */
+	private static int readNumber(final InputStream in, final long[] position)
+			throws IOException {
+		String token = readToken(in, position);
+		try {
+			int number = Integer.parseInt(token);
+			if (number <= 0) {
+				throw new IOException("Illegal header value " + token + "!");
+			}
+			return number;
+		} catch (NumberFormatException e) {
+			throw new IOException("Illegal header value " + token + "!", e);
+		}
+	}
+
+	/** Image width. */
+	private final int width;
+
+	/** Image height. */
+	private final int height;
+
+	/** Number of samples per pixel, 1 for PGM and 3 for PPM. */
+	private final int samplesPerPixel;
+
+	/** Number of bytes per sample, 1 or 2. */
+	private final int bytesPerSample;
+
+	/** Factor that scales samples to gray levels between 0 and 255. */
+	private final float sampleScale;
+
+	/** Number of bytes in a row. */
+	private final long rowSize;
+
+	/** Number of rows in each mapping. */
+	private final int rowsPerMapping;
+
+	/** Mappings of the pixel data, each of whole rows, or null if closed. */
+	private MappedByteBuffer[] mappings;
+
+	/**
+	 * Held shared while a row is read and exclusively while the mappings are
+	 * released.
+	 */
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * Maps a PGM or PPM file.
+	 *
+	 * @param file
+	 *            the file
+	 * @throws IOException
+	 *             if the file can not be read or is not a binary PGM or PPM
+	 *             file
+	 */
+	public PortableAnymapPixelSource(final File file) throws IOException {
+		// parse the header, remembering where the pixel data starts
+		final long[] position = new long[1];
+		int maxValue;
+		try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+			String magic = readToken(in, position);
+			if ("P5".equals(magic)) {
+				this.samplesPerPixel = 1;
+			} else if ("P6".equals(magic)) {
+				this.samplesPerPixel = 3;
+			} else {
+				throw new IOException("Not a binary PGM or PPM file!");
+			}
+
+			this.width = readNumber(in, position);
+			this.height = readNumber(in, position);
+			maxValue = readNumber(in, position);
+		}
+
+		if (maxValue > 65535) {
+			throw new IOException("Illegal maximum value " + maxValue + "!");
+		}
+
+		this.bytesPerSample = maxValue < 256 ? 1 : 2;
+		this.sampleScale = 255f / maxValue;
+		this.rowSize = (long) this.width * this.samplesPerPixel
+				* this.bytesPerSample;
+
+		if (this.rowSize > MAX_MAPPING_SIZE) {
+			throw new IOException("Rows are too long to map!");
+		}
+
+		this.rowsPerMapping = (int) Math.min(this.height, MAX_MAPPING_SIZE
+				/ this.rowSize);
+		this.mappings = new MappedByteBuffer[(this.height
+				+ this.rowsPerMapping - 1)
+				/ this.rowsPerMapping];
+
+		// mappings stay valid after the channel is closed
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+				FileChannel channel = randomAccessFile.getChannel()) {
+			if (channel.size() < position[0] + this.rowSize * this.height) {
+				throw new IOException("Truncated pixel data!");
+			}
+
+			for (int i = 0; i < this.mappings.length; i++) {
+				int rows = Math.min(this.rowsPerMapping, this.height - i
+						* this.rowsPerMapping);
+				this.mappings[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+						position[0] + i * this.rowsPerMapping * this.rowSize,
+						rows * this.rowSize);
+			}
+		}
+	}
+
+	/**
+	 * Releases the mappings. The file is unmapped at once where the runtime
+	 * allows it, otherwise when the mappings are garbage collected.
+	 */
+	@Override
+	public void close() {
+		this.lock.writeLock().lock();
+		try {
+			if (this.mappings == null) {
+				return;
+			}
+			for (MappedByteBuffer mapping : this.mappings) {
+				unmap(mapping);
+			}
+			this.mappings = null;
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public int getHeight() {
+		return this.height;
+	}
+
+	@Override
+	public int getWidth() {
+		return this.width;
+	}
+
+	@Override
+	public void readRow(final int y, final int width,
+			final float[] destination, final int destinationOffset) {
+		if (y < 0 || y >= this.height || width < 0 || width > this.width) {
+			throw new IllegalArgumentException("Illegal row region!");
+		}
+
+		this.lock.readLock().lock();
+		try {
+			if (this.mappings == null) {
+				throw new IllegalStateException("Pixel source is closed!");
+			}
+
+			// absolute reads, so the shared mapping is never modified
+			final ByteBuffer mapping = this.mappings[y / this.rowsPerMapping];
+			final int rowStart = (int) ((y % this.rowsPerMapping) * this.rowSize);
+			if (this.samplesPerPixel == 1) {
+				for (int x = 0; x < width; x++) {
+					destination[destinationOffset + x] = readSample(mapping,
+							rowStart, x) * this.sampleScale;
+				}
+			} else {
+				for (int x = 0; x < width; x++) {
+					float red = readSample(mapping, rowStart, 3 * x)
+							* this.sampleScale;
+					float green = readSample(mapping, rowStart, 3 * x + 1)
+							* this.sampleScale;
+					float blue = readSample(mapping, rowStart, 3 * x + 2)
+							* this.sampleScale;
+					destination[destinationOffset + x] = 0.3f * red + 0.59f
+							* green + 0.11f * blue;
+				}
+			}
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Reads a sample of a row.
+	 *
+	 * @param mapping
+	 *            mapping holding the row
+	 * @param rowStart
+	 *            position of the row in the mapping
+	 * @param index
+	 *            sample index in the row
+	 * @return sample value
+	 */
+	private int readSample(final ByteBuffer mapping, final int rowStart,
+			final int index) {
+		if (this.bytesPerSample == 1) {
+			return mapping.get(rowStart + index) & 0xFF;
+		}
+		return ((mapping.get(rowStart + 2 * index) & 0xFF) << 8)
+				| (mapping.get(rowStart + 2 * index + 1) & 0xFF);
+	}
+
+	/**
+	 * Unmaps a mapping through the internal API of the runtime. If the
+	 * runtime does not allow it, the mapping is left to the garbage collector.
+	 * The mapping must not be read afterwards.
+	 *
+	 * @param mapping
+	 *            the mapping
+	 */
+	private static void unmap(final MappedByteBuffer mapping) {
+		try {
+			// Java 9 and later
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner = unsafeClass.getMethod("invokeCleaner",
+					ByteBuffer.class);
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			invokeCleaner.invoke(theUnsafe.get(null), mapping);
+		} catch (NoSuchMethodException e) {
+			// Java 8
+			try {
+				Method cleanerMethod = mapping.getClass().getMethod("cleaner");
+				cleanerMethod.setAccessible(true);
+				Object cleaner = cleanerMethod.invoke(mapping);
+				if (cleaner != null) {
+					cleaner.getClass().getMethod("clean").invoke(cleaner);
+				}
+			} catch (ReflectiveOperationException | RuntimeException e2) {
+				// left to the garbage collector
+			}
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// left to the garbage collector
+		}
+	}
+}
@@ -0,0 +1,394 @@
+package io.korhner.asciimg.image.converter;
+
+import io.korhner.asciimg.image.AsciiImgCache;
+import io.korhner.asciimg.image.matrix.ByteGrayscaleMatrix;
+import io.korhner.asciimg.image.matrix.GrayscaleMatrix;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, least recently used cache of best fit characters, keyed by tile
+ * contents. Images with large flat or repeating areas contain many identical
+ * tiles, and the cache lets the converter skip the character search for every
+ * repeat.
+ * 
+ * By default tiles are keyed by the exact bits of their pixels, so only
+ * identical tiles share a result and a converter gives the same output with
+ * or without the cache, in any order and on any number of threads. A
+ * quantization step of 1 or more instead keys tiles by pixel levels of that
+ * width. This is lossy: tiles that differ within a level get the character
+ * found for whichever of them was matched first, so the output depends on
+ * the order in which tiles are matched, and with parallel matching on thread
+ * scheduling.
+ * 
+ * The cache is thread safe and can be shared between converters. Entries are
+ * spread over segments by signature hash, each with its own lock and least
+ * recently used order, so threads matching different tiles rarely wait for
+ * each other. Signatures include the identity of the character cache and of
+ * the strategy or index used for matching, so entries of different
+ * converters never mix.
+ */
+public class TileMatchCache {
+
+	/**
+	 * Identifies a tile by its contents and the character cache and matcher
+	 * used to match it.
+	 */
+	public static final class Signature {
+
+		/** The character cache. */
+		private final AsciiImgCache characterCache;
+
+		/** The character fit strategy or index used for matching. */
+		private final Object matcher;
+
+		/** Pixel bits or quantized pixel levels of the tile. */
+		private final int[] key;
+
+		/** Precalculated hash code. */
+		private final int hashCode;
+
+		/**
+		 * Instantiates a new signature.
+		 *
+		 * @param characterCache
+		 *            the character cache
+		 * @param matcher
+		 *            the character fit strategy or index used for matching
+		 * @param key
+		 *            pixel bits or quantized pixel levels of the tile
+		 * @param keyHashCode
+		 *            hash code of the key, as by {@link Arrays#hashCode(int[])}
+		 */
+		private Signature(final AsciiImgCache characterCache,
+				final Object matcher, final int[] key, final int keyHashCode) {
+			this.characterCache = characterCache;
+			this.matcher = matcher;
+			this.key = key;
+			this.hashCode = 31 * (31 * System.identityHashCode(characterCache) + System
+					.identityHashCode(matcher))
+					+ keyHashCode;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Signature)) {
+				return false;
+			}
+			Signature other = (Signature) obj;
+			return this.hashCode == other.hashCode
+					&& this.characterCache == other.characterCache
+					&& this.matcher == other.matcher
+					&& Arrays.equals(this.key, other.key);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hashCode;
+		}
+	}
+
+	/**
+	 * A segment of the cache, holding the entries of some signature hashes in
+	 * least recently used order. Guarded by its own monitor.
+	 */
+	private final class Segment extends LinkedHashMap<Signature, Integer> {
+
+		private static final long serialVersionUID = 1L;
+
+		/** Maximum number of entries of this segment. */
+		private final int segmentCapacity;
+
+		/**
+		 * Instantiates a new segment.
+		 *
+		 * @param segmentCapacity
+		 *            maximum number of entries of this segment
+		 */
+		private Segment(final int segmentCapacity) {
+			super(16, 0.75f, true);
+			this.segmentCapacity = segmentCapacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(
+				final Map.Entry<Signature, Integer> eldest) {
+			if (size() > this.segmentCapacity) {
+				TileMatchCache.this.evictionCount.increment();
+				return true;
+			}
+			return false;
+		}
+	}
+
+	/** Default maximum number of cached tiles. */
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	/** Quantization step that keys tiles by the exact bits of their pixels. */
+	public static final float EXACT = 0f;
+
+	/** Default quantization step, exact keys. */
+	public static final float DEFAULT_QUANTIZATION_STEP = EXACT;
+
+	/** Maximum number of segments, a power of two. */
+	private static final int MAX_SEGMENT_COUNT = 16;
+
+	/** Maximum number of cached tiles. */
+	private final int capacity;
+
+	/** Width of a quantization level in gray levels, or exact. */
+	private final float quantizationStep;
+
+	/** Segments of the cache, a power of two of them. */
+	private final Segment[] segments;
+
+	/** Number of lookups that found a cached character. */
+	private final LongAdder hitCount = new LongAdder();
+
+	/** Number of lookups that found nothing. */
+	private final LongAdder missCount = new LongAdder();
+
+	/** Number of entries evicted to respect capacity. */
+	private final LongAdder evictionCount = new LongAdder();
+
+	/**
+	 * Instantiates a new tile match cache with default capacity and exact
+	 * keys.
+	 */
+	public TileMatchCache() {
+		this(DEFAULT_CAPACITY, DEFAULT_QUANTIZATION_STEP);
+	}
+
+	/**
+	 * Instantiates a new tile match cache. The capacity is split evenly
+	 * between segments, so the least recently used order is kept per segment
+	 * and not for the whole cache.
+	 *
+	 * @param capacity
+	 *            maximum number of cached tiles
+	 * @param quantizationStep
+	 *            {@link #EXACT} to key tiles by exact pixels, or the width of
+	 *            a lossy quantization level in gray levels, at least 1
+	 */
+	public TileMatchCache(final int capacity, final float quantizationStep) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Illegal capacity!");
+		}
+		if (quantizationStep != EXACT && !(quantizationStep >= 1f)) {
+			throw new IllegalArgumentException("Illegal quantization step!");
+		}
+
+		this.capacity = capacity;
+		this.quantizationStep = quantizationStep;
+		int segmentCount = Integer.highestOneBit(Math.min(capacity,
+				MAX_SEGMENT_COUNT));
+		this.segments = new Segment[segmentCount];
+		for (int i = 0; i < segmentCount; i++) {
+			this.segments[i] = new Segment(capacity / segmentCount);
+		}
+	}
+
+	/**
+	 * Removes all entries. Counters are kept.
+	 */
+	public void clear() {
+		for (Segment segment : this.segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	/**
+	 * Creates the signature of a tile.
+	 *
+	 * @param characterCache
+	 *            the character cache used for matching
+	 * @param matcher
+	 *            the character fit strategy or index used for matching
+	 * @param tile
+	 *            the tile
+	 * @return the tile signature
+	 */
+	public Signature createSignature(final AsciiImgCache characterCache,
+			final Object matcher, final GrayscaleMatrix tile) {
+		final float[] data = tile.getData();
+		final int[] key = new int[tile.getWidth() * tile.getHeight()];
+		int keyHashCode = 1;
+		for (int y = 0; y < tile.getHeight(); y++) {
+			int rowStart = tile.getIndex(0, y);
+			for (int x = 0; x < tile.getWidth(); x++) {
+				float value = data[rowStart + x];
+				int element = isExact() ? Float.floatToIntBits(value)
+						: (int) (value / this.quantizationStep);
+				key[y * tile.getWidth() + x] = element;
+				keyHashCode = 31 * keyHashCode + element;
+			}
+		}
+		return new Signature(characterCache, matcher, key, keyHashCode);
+	}
+
+	/**
+	 * Creates the signature of an 8-bit tile.
+	 *
+	 * @param characterCache
+	 *            the character cache used for matching
+	 * @param matcher
+	 *            the character fit strategy or index used for matching
+	 * @param tile
+	 *            the tile
+	 * @return the tile signature
+	 */
+	public Signature createSignature(final AsciiImgCache characterCache,
+			final Object matcher, final ByteGrayscaleMatrix tile) {
+		final byte[] data = tile.getData();
+		final int[] key = new int[tile.getWidth() * tile.getHeight()];
+		int keyHashCode = 1;
+		for (int y = 0; y < tile.getHeight(); y++) {
+			int rowStart = tile.getIndex(0, y);
+			for (int x = 0; x < tile.getWidth(); x++) {
+				int value = data[rowStart + x] & 0xFF;
+				int element = isExact() ? value
+						: (int) (value / this.quantizationStep);
+				key[y * tile.getWidth() + x] = element;
+				keyHashCode = 31 * keyHashCode + element;
+			}
+		}
+		return new Signature(characterCache, matcher, key, keyHashCode);
+	}
+
+	/**
+	 * Gets the cached best fit character of a tile.
+	 *
+	 * @param signature
+	 *            the tile signature
+	 * @return cache index of the best fit character, or -1 if not cached
+	 */
+	public int get(final Signature signature) {
+		Segment segment = getSegment(signature);
+		Integer characterIndex;
+		synchronized (segment) {
+			characterIndex = segment.get(signature);
+		}
+		if (characterIndex == null) {
+			this.missCount.increment();
+			return -1;
+		}
+		this.hitCount.increment();
+		return characterIndex;
+	}
+
+	/**
+	 * Gets the maximum number of cached tiles.
+	 *
+	 * @return the capacity
+	 */
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * Gets the number of entries evicted to respect capacity.
+	 *
+	 * @return the eviction count
+	 */
+	public long getEvictionCount() {
+		return this.evictionCount.sum();
+	}
+
+	/**
+	 * Gets the number of lookups that found a cached character.
+	 *
+	 * @return the hit count
+	 */
+	public long getHitCount() {
+		return this.hitCount.sum();
+	}
+
+	/**
+	 * Gets the number of lookups that found nothing.
+	 *
+	 * @return the miss count
+	 */
+	public long getMissCount() {
+		return this.missCount.sum();
+	}
+
+	/**
+	 * Gets the width of a quantization level.
+	 *
+	 * @return the quantization step, or {@link #EXACT} if tiles are keyed by
+	 *         exact pixels
+	 */
+	public float getQuantizationStep() {
+		return this.quantizationStep;
+	}
+
+	/**
+	 * Gets the segment holding the entry of a signature.
+	 *
+	 * @param signature
+	 *            the tile signature
+	 * @return the segment
+	 */
+	private Segment getSegment(final Signature signature) {
+		int hashCode = signature.hashCode();
+		return this.segments[(hashCode ^ (hashCode >>> 16))
+				& (this.segments.length - 1)];
+	}
+
+	/**
+	 * Checks whether tiles are keyed by the exact bits of their pixels.
+	 *
+	 * @return true if only identical tiles share a result, false if tiles are
+	 *         quantized
+	 */
+	public boolean isExact() {
+		return this.quantizationStep == EXACT;
+	}
+
+	/**
+	 * Caches the best fit character of a tile.
+	 *
+	 * @param signature
+	 *            the tile signature
+	 * @param characterIndex
+	 *            cache index of the best fit character
+	 */
+	public void put(final Signature signature, final int characterIndex) {
+		Segment segment = getSegment(signature);
+		synchronized (segment) {
+			segment.put(signature, characterIndex);
+		}
+	}
+
+	/**
+	 * Resets hit, miss and eviction counters.
+	 */
+	public void resetCounters() {
+		this.hitCount.reset();
+		this.missCount.reset();
+		this.evictionCount.reset();
+	}
+
+	/**
+	 * Gets the number of cached tiles.
+	 *
+	 * @return the number of cached tiles
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment segment : this.segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+}
@@ -0,0 +1,271 @@
+package io.korhner.asciimg.image.matrix;
+
+/**
+ * A class that encapsulates an 8-bit grayscale image. Color values are
+ * unsigned bytes with values between 0 and 255, a quarter of the memory of a
+ * {@link GrayscaleMatrix}.
+ */
+public class ByteGrayscaleMatrix {
+
+	/**
+	 * Convert ARGB color to an 8-bit gray level, with the same weights as
+	 * {@link GrayscaleMatrix}.
+	 *
+	 * @param rgbColor
+	 *            ARGB color
+	 * @return gray level between 0 and 255
+	 */
+	public static int convertRGBToGrayscale(final int rgbColor) {
+		// extract components
+		int red = (rgbColor >> 16) & 0xFF;
+		int green = (rgbColor >> 8) & 0xFF;
+		int blue = rgbColor & 0xFF;
+
+		// convert to grayscale
+		return Math.round(0.3f * red + 0.59f * green + 0.11f * blue);
+	}
+
+	/**
+	 * Creates a new matrix by rounding the pixels of a float matrix to whole
+	 * gray levels.
+	 *
+	 * @param source
+	 *            source matrix
+	 * @return 8-bit matrix
+	 */
+	public static ByteGrayscaleMatrix createFromMatrix(
+			final GrayscaleMatrix source) {
+		ByteGrayscaleMatrix output = new ByteGrayscaleMatrix(
+				source.getWidth(), source.getHeight());
+
+		float[] sourceData = source.getData();
+		for (int y = 0; y < output.height; y++) {
+			int sourceIndex = source.getIndex(0, y);
+			for (int x = 0; x < output.width; x++) {
+				int level = Math.round(sourceData[sourceIndex + x]);
+				output.data[y * output.width + x] = (byte) Math.max(0,
+						Math.min(255, level));
+			}
+		}
+
+		return output;
+	}
+
+	/**
+	 * Creates a new matrix from a sub region. Pixels are copied, see
+	 * {@link #createView(ByteGrayscaleMatrix, int, int, int, int)} for a
+	 * matrix that shares the pixels of the source.
+	 *
+	 * @param source
+	 *            source matrix
+	 * @param width
+	 *            sub region width
+	 * @param height
+	 *            subregion height
+	 * @param startPixelX
+	 *            x coordinate of sub region start
+	 * @param startPixelY
+	 *            y coordinate of sub region start
+	 * @return matrix containing the specified sub region
+	 */
+	public static ByteGrayscaleMatrix createFromRegion(
+			final ByteGrayscaleMatrix source, final int width,
+			final int height, final int startPixelX, final int startPixelY) {
+		checkRegion(source, width, height, startPixelX, startPixelY);
+
+		ByteGrayscaleMatrix output = new ByteGrayscaleMatrix(width, height);
+
+		// copy row by row
+		for (int y = 0; y < height; y++) {
+			System.arraycopy(source.data,
+					source.getIndex(startPixelX, startPixelY + y), output.data,
+					y * width, width);
+		}
+
+		return output;
+	}
+
+	/**
+	 * Creates a view of a sub region. The view shares the pixel array of the
+	 * source, so nothing is copied and changes to either are visible in both.
+	 *
+	 * @param source
+	 *            source matrix
+	 * @param width
+	 *            sub region width
+	 * @param height
+	 *            subregion height
+	 * @param startPixelX
+	 *            x coordinate of sub region start
+	 * @param startPixelY
+	 *            y coordinate of sub region start
+	 * @return view of the specified sub region
+	 */
+	public static ByteGrayscaleMatrix createView(
+			final ByteGrayscaleMatrix source, final int width,
+			final int height, final int startPixelX, final int startPixelY) {
+		checkRegion(source, width, height, startPixelX, startPixelY);
+
+		return new ByteGrayscaleMatrix(source.data, source.getIndex(
+				startPixelX, startPixelY), source.rowStride, width, height);
+	}
+
+	/**
+	 * Checks that a sub region lies within the source matrix.
+	 *
+	 * @param source
+	 *            source matrix
+	 * @param width
+	 *            sub region width
+	 * @param height
+	 *            subregion height
+	 * @param startPixelX
+	 *            x coordinate of sub region start
+	 * @param startPixelY
+	 *            y coordinate of sub region start
+	 */
+	private static void checkRegion(final ByteGrayscaleMatrix source,
+			final int width, final int height, final int startPixelX,
+			final int startPixelY) {
+		if (width <= 0 || height <= 0 || startPixelX < 0 || startPixelY < 0
+				|| startPixelX + width > source.width
+				|| startPixelY + height > source.height) {
+			throw new IllegalArgumentException("Illegal sub region size!");
+		}
+	}
+
+	/** Grayscale pixel data as unsigned bytes. */
+	private final byte data[];
+
+	/** Index of the first pixel in the data array. */
+	private final int offset;
+
+	/** Distance between the starts of two rows in the data array. */
+	private final int rowStride;
+
+	/** Image width. */
+	private final int width;
+
+	/** Image height. */
+	private final int height;
+
+	/**
+	 * Creates an empty image with the given dimensions.
+	 *
+	 * @param width
+	 *            image width
+	 * @param height
+	 *            image height
+	 */
+	public ByteGrayscaleMatrix(final int width, final int height) {
+		this(new byte[width * height], 0, width, width, height);
+	}
+
+	/**
+	 * Creates an image backed by an existing pixel array.
+	 *
+	 * @param data
+	 *            pixel array
+	 * @param offset
+	 *            index of the first pixel
+	 * @param rowStride
+	 *            distance between the starts of two rows
+	 * @param width
+	 *            image width
+	 * @param height
+	 *            image height
+	 */
+	private ByteGrayscaleMatrix(final byte[] data, final int offset,
+			final int rowStride, final int width, final int height) {
+		this.data = data;
+		this.offset = offset;
+		this.rowStride = rowStride;
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Instantiates a new grayscale matrix from a ARGB bitmap image.
+	 *
+	 * @param pixels
+	 *            pixel data in ARGB format
+	 * @param width
+	 *            image width
+	 * @param height
+	 *            image height
+	 */
+	public ByteGrayscaleMatrix(final int[] pixels, final int width,
+			final int height) {
+		this(width, height);
+
+		if (width * height != pixels.length) {
+			throw new IllegalArgumentException(
+					"Pixels array does not match specified width and height!");
+		}
+
+		for (int i = 0; i < this.data.length; i++) {
+			this.data[i] = (byte) convertRGBToGrayscale(pixels[i]);
+		}
+	}
+
+	/**
+	 * Gets a reference to pixel array. Values are unsigned, read them with
+	 * {@code data[i] & 0xFF}. The matrix may be a view into a larger array,
+	 * pixel (x, y) is at {@code getOffset() + y * getRowStride() + x}.
+	 *
+	 * @return pixel array
+	 */
+	public byte[] getData() {
+		return this.data;
+	}
+
+	/**
+	 * Gets the image height.
+	 *
+	 * @return the height
+	 */
+	public int getHeight() {
+		return this.height;
+	}
+
+	/**
+	 * Gets the index of a pixel in the data array.
+	 *
+	 * @param x
+	 *            x coordinate
+	 * @param y
+	 *            y coordinate
+	 * @return index of the pixel
+	 */
+	public int getIndex(final int x, final int y) {
+		return this.offset + y * this.rowStride + x;
+	}
+
+	/**
+	 * Gets the index of the first pixel in the data array.
+	 *
+	 * @return the offset
+	 */
+	public int getOffset() {
+		return this.offset;
+	}
+
+	/**
+	 * Gets the distance between the starts of two rows in the data array.
+	 *
+	 * @return the row stride
+	 */
+	public int getRowStride() {
+		return this.rowStride;
+	}
+
+	/**
+	 * Gets the image width.
+	 *
+	 * @return image width
+	 */
+	public int getWidth() {
+		return this.width;
+	}
+
+}
@@ -0,0 +1,137 @@
+package io.korhner.asciimg.image.matrix;
+
+import java.nio.FloatBuffer;
+
+/**
+ * A grayscale image in direct memory, outside of the Java heap. Matrices are
+ * acquired from a {@link DirectGrayscaleMatrixPool} and must be closed to
+ * return their memory to the pool. A closed matrix can not be used.
+ * 
+ * Pixels are stored row by row without gaps. Reading is thread safe, writing
+ * is not.
+ */
+public class DirectGrayscaleMatrix implements ReadableGrayscaleMatrix,
+		AutoCloseable {
+
+	/** The pool the buffer is returned to. */
+	private final DirectGrayscaleMatrixPool pool;
+
+	/** Pixel data, or null once closed. */
+	private volatile FloatBuffer buffer;
+
+	/** Image width. */
+	private final int width;
+
+	/** Image height. */
+	private final int height;
+
+	/**
+	 * Instantiates a new matrix backed by a pooled buffer.
+	 *
+	 * @param pool
+	 *            the pool the buffer is returned to
+	 * @param buffer
+	 *            direct buffer with room for all pixels
+	 * @param width
+	 *            image width
+	 * @param height
+	 *            image height
+	 */
+	DirectGrayscaleMatrix(final DirectGrayscaleMatrixPool pool,
+			final FloatBuffer buffer, final int width, final int height) {
+		this.pool = pool;
+		this.buffer = buffer;
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Returns the memory of the matrix to its pool. Closing a closed matrix
+	 * has no effect.
+	 */
+	@Override
+	public void close() {
+		FloatBuffer released;
+		synchronized (this) {
+			released = this.buffer;
+			this.buffer = null;
+		}
+		if (released != null) {
+			this.pool.release(released);
+		}
+	}
+
+	@Override
+	public void copyRegion(final int startPixelX, final int startPixelY,
+			final int width, final int height, final float[] destination,
+			final int destinationOffset, final int destinationRowStride) {
+		GrayscaleMatrix.checkRegion(this, width, height, startPixelX,
+				startPixelY);
+		final FloatBuffer data = getBuffer();
+
+		// absolute reads leave the buffer position alone
+		for (int y = 0; y < height; y++) {
+			int rowStart = (startPixelY + y) * this.width + startPixelX;
+			int destinationRowStart = destinationOffset + y
+					* destinationRowStride;
+			for (int x = 0; x < width; x++) {
+				destination[destinationRowStart + x] = data.get(rowStart + x);
+			}
+		}
+	}
+
+	/**
+	 * Gets the pixel buffer. Pixel (x, y) is at {@code y * getWidth() + x}.
+	 *
+	 * @return the pixel buffer
+	 */
+	public FloatBuffer getBuffer() {
+		FloatBuffer data = this.buffer;
+		if (data == null) {
+			throw new IllegalStateException("Matrix is closed!");
+		}
+		return data;
+	}
+
+	@Override
+	public int getHeight() {
+		return this.height;
+	}
+
+	@Override
+	public int getWidth() {
+		return this.width;
+	}
+
+	/**
+	 * Checks whether the matrix is closed.
+	 *
+	 * @return true if the matrix was closed
+	 */
+	public boolean isClosed() {
+		return this.buffer == null;
+	}
+
+	/**
+	 * Sets the pixels of a row.
+	 *
+	 * @param y
+	 *            row index
+	 * @param source
+	 *            gray levels of the row
+	 * @param sourceOffset
+	 *            index of the first gray level in the source
+	 */
+	public void setRow(final int y, final float[] source,
+			final int sourceOffset) {
+		if (y < 0 || y >= this.height) {
+			throw new IllegalArgumentException("Illegal row index!");
+		}
+
+		final FloatBuffer data = getBuffer();
+		final int rowStart = y * this.width;
+		for (int x = 0; x < this.width; x++) {
+			data.put(rowStart + x, source[sourceOffset + x]);
+		}
+	}
+}
@@ -0,0 +1,143 @@
+package io.korhner.asciimg.image.matrix;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A pool of direct memory for {@link DirectGrayscaleMatrix} instances.
+ * Converting images one after another allocates the pixel memory only once,
+ * and none of it is on the Java heap, so large images do not end up in the
+ * old generation.
+ * 
+ * A matrix takes the smallest free buffer that is large enough, or a new
+ * buffer if there is none. Closed matrices return their buffers, and up to
+ * the maximum number of free buffers are kept. The pool is thread safe.
+ */
+public class DirectGrayscaleMatrixPool {
+
+	/** Default maximum number of free buffers kept. */
+	public static final int DEFAULT_MAX_FREE_BUFFERS = 4;
+
+	/** Maximum number of free buffers kept. */
+	private final int maxFreeBuffers;
+
+	/** Free buffers. */
+	private final List<FloatBuffer> freeBuffers = new ArrayList<FloatBuffer>();
+
+	/** Number of buffers allocated. */
+	private long allocationCount;
+
+	/**
+	 * Instantiates a new pool with the default number of free buffers.
+	 */
+	public DirectGrayscaleMatrixPool() {
+		this(DEFAULT_MAX_FREE_BUFFERS);
+	}
+
+	/**
+	 * Instantiates a new pool.
+	 *
+	 * @param maxFreeBuffers
+	 *            maximum number of free buffers kept
+	 */
+	public DirectGrayscaleMatrixPool(final int maxFreeBuffers) {
+		if (maxFreeBuffers < 0) {
+			throw new IllegalArgumentException("Illegal buffer count!");
+		}
+		this.maxFreeBuffers = maxFreeBuffers;
+	}
+
+	/**
+	 * Acquires a matrix. The initial pixel values are undefined.
+	 *
+	 * @param width
+	 *            image width
+	 * @param height
+	 *            image height
+	 * @return the matrix, to be closed after use
+	 */
+	public DirectGrayscaleMatrix acquire(final int width, final int height) {
+		if (width <= 0 || height <= 0
+				|| (long) width * height > Integer.MAX_VALUE / 4) {
+			throw new IllegalArgumentException("Illegal matrix size!");
+		}
+
+		final int pixelCount = width * height;
+		FloatBuffer buffer = null;
+
+		synchronized (this) {
+			int best = -1;
+			for (int i = 0; i < this.freeBuffers.size(); i++) {
+				int capacity = this.freeBuffers.get(i).capacity();
+				if (capacity >= pixelCount
+						&& (best < 0 || capacity < this.freeBuffers.get(best)
+								.capacity())) {
+					best = i;
+				}
+			}
+
+			if (best >= 0) {
+				buffer = this.freeBuffers.remove(best);
+			} else {
+				this.allocationCount++;
+			}
+		}
+
+		if (buffer == null) {
+			buffer = ByteBuffer.allocateDirect(pixelCount * 4)
+					.order(ByteOrder.nativeOrder()).asFloatBuffer();
+		}
+
+		return new DirectGrayscaleMatrix(this, buffer, width, height);
+	}
+
+	/**
+	 * Drops all free buffers. Their memory is freed once they are garbage
+	 * collected.
+	 */
+	public synchronized void clear() {
+		this.freeBuffers.clear();
+	}
+
+	/**
+	 * Gets the number of buffers allocated by the pool.
+	 *
+	 * @return the allocation count
+	 */
+	public synchronized long getAllocationCount() {
+		return this.allocationCount;
+	}
+
+	/**
+	 * Gets the number of free buffers.
+	 *
+	 * @return the free buffer count
+	 */
+	public synchronized int getFreeBufferCount() {
+		return this.freeBuffers.size();
+	}
+
+	/**
+	 * Gets the maximum number of free buffers kept.
+	 *
+	 * @return the maximum free buffer count
+	 */
+	public int getMaxFreeBuffers() {
+		return this.maxFreeBuffers;
+	}
+
+	/**
+	 * Returns a buffer of a closed matrix.
+	 *
+	 * @param buffer
+	 *            the buffer
+	 */
+	synchronized void release(final FloatBuffer buffer) {
+		if (this.freeBuffers.size() < this.maxFreeBuffers) {
+			this.freeBuffers.add(buffer);
+		}
+	}
+}
@@ -6,10 +6,12 @@ import io.korhner.asciimg.utils.ArrayUtils;
  * A class that encapsulates a grayscale image. Color values are floats with
  * values between 0.0f and 255.0f.
  */
-public class GrayscaleMatrix {
+public class GrayscaleMatrix implements ReadableGrayscaleMatrix {
 
 	/**
-	 * Creates a new matrix from a sub region.
+	 * Creates a new matrix from a sub region. Pixels are copied, see
+	 * {@link #createView(GrayscaleMatrix, int, int, int, int)} for a matrix
+	 * that shares the pixels of the source.
 	 *
 	 * @param source
 	 *            source matrix
@@ -26,20 +28,90 @@ public class GrayscaleMatrix {
 	public static GrayscaleMatrix createFromRegion(
 			final GrayscaleMatrix source, final int width, final int height,
 			final int startPixelX, final int startPixelY) {
-		if (width <= 0 || height <= 0 || width > source.width
-				|| height > source.height) {
+		GrayscaleMatrix output = new GrayscaleMatrix(width, height);
+		source.copyRegion(startPixelX, startPixelY, width, height,
+				output.data, 0, width);
+		return output;
+	}
+
+	/**
+	 * Creates a view of a sub region. The view shares the pixel array of the
+	 * source, so nothing is copied and changes to either are visible in both.
+	 *
+	 * @param source
+	 *            source matrix
+	 * @param width
+	 *            sub region width
+	 * @param height
+	 *            subregion height
+	 * @param startPixelX
+	 *            x coordinate of sub region start
+	 * @param startPixelY
+	 *            y coordinate of sub region start
+	 * @return view of the specified sub region
+	 */
+	public static GrayscaleMatrix createView(final GrayscaleMatrix source,
+			final int width, final int height, final int startPixelX,
+			final int startPixelY) {
+		checkRegion(source, width, height, startPixelX, startPixelY);
+
+		return new GrayscaleMatrix(source.data, source.getIndex(startPixelX,
+				startPixelY), source.rowStride, width, height);
+	}
+
+	/**
+	 * Checks that a sub region lies within the source matrix.
+	 *
+	 * @param source
+	 *            source matrix
+	 * @param width
+	 *            sub region width
+	 * @param height
+	 *            subregion height
+	 * @param startPixelX
+	 *            x coordinate of sub region start
+	 * @param startPixelY
+	 *            y coordinate of sub region start
+	 */
+	static void checkRegion(final ReadableGrayscaleMatrix source,
+			final int width, final int height, final int startPixelX,
+			final int startPixelY) {
+		if (width <= 0 || height <= 0 || startPixelX < 0 || startPixelY < 0
+				|| startPixelX + width > source.getWidth()
+				|| startPixelY + height > source.getHeight()) {
 			throw new IllegalArgumentException("Illegal sub region size!");
 		}
+	}
 
-		GrayscaleMatrix output = new GrayscaleMatrix(width, height);
+	/**
+	 * Creates a new matrix at half the resolution of the source. Each pixel is
+	 * the average of a 2x2 block of source pixels. Blocks at the right and
+	 * bottom edge of sources with odd dimensions are partial.
+	 *
+	 * @param source
+	 *            source matrix
+	 * @return downsampled matrix
+	 */
+	public static GrayscaleMatrix createDownsampled(final GrayscaleMatrix source) {
+		GrayscaleMatrix output = new GrayscaleMatrix((source.width + 1) / 2,
+				(source.height + 1) / 2);
 
-		for (int i = 0; i < output.data.length; i++) {
-			int xOffset = i % width;
-			int yOffset = i / width;
+		for (int y = 0; y < output.height; y++) {
+			int sourceEndY = Math.min(2 * y + 2, source.height);
+			for (int x = 0; x < output.width; x++) {
+				int sourceEndX = Math.min(2 * x + 2, source.width);
 
-			int index = ArrayUtils.convert2DTo1D(startPixelX + xOffset,
-					startPixelY + yOffset, source.width);
-			output.data[i] = source.data[index];
+				float sum = 0;
+				int count = 0;
+				for (int sourceY = 2 * y; sourceY < sourceEndY; sourceY++) {
+					for (int sourceX = 2 * x; sourceX < sourceEndX; sourceX++) {
+						sum += source.data[source.getIndex(sourceX, sourceY)];
+						count++;
+					}
+				}
+				output.data[ArrayUtils.convert2DTo1D(x, y, output.width)] = sum
+						/ count;
+			}
 		}
 
 		return output;
@@ -48,6 +120,12 @@ public class GrayscaleMatrix {
 	/** Grayscale pixel data. Values are between 0.0f and 255.0f. */
 	private final float data[];
 
+	/** Index of the first pixel in the data array. */
+	private final int offset;
+
+	/** Distance between the starts of two rows in the data array. */
+	private final int rowStride;
+
 	/** Image width. */
 	private final int width;
 
@@ -63,7 +141,28 @@ public class GrayscaleMatrix {
 	 *            image height
 	 */
 	public GrayscaleMatrix(final int width, final int height) {
-		this.data = new float[width * height];
+		this(new float[width * height], 0, width, width, height);
+	}
+
+	/**
+	 * Creates an image backed by an existing pixel array.
+	 *
+	 * @param data
+	 *            pixel array
+	 * @param offset
+	 *            index of the first pixel
+	 * @param rowStride
+	 *            distance between the starts of two rows
+	 * @param width
+	 *            image width
+	 * @param height
+	 *            image height
+	 */
+	private GrayscaleMatrix(final float[] data, final int offset,
+			final int rowStride, final int width, final int height) {
+		this.data = data;
+		this.offset = offset;
+		this.rowStride = rowStride;
 		this.width = width;
 		this.height = height;
 	}
@@ -108,8 +207,32 @@ public class GrayscaleMatrix {
 		return 0.3f * red + 0.59f * green + 0.11f * blue;
 	}
 
+	@Override
+	public void copyRegion(final int startPixelX, final int startPixelY,
+			final int width, final int height, final float[] destination,
+			final int destinationOffset, final int destinationRowStride) {
+		checkRegion(this, width, height, startPixelX, startPixelY);
+
+		for (int y = 0; y < height; y++) {
+			System.arraycopy(this.data, getIndex(startPixelX, startPixelY + y),
+					destination, destinationOffset + y * destinationRowStride,
+					width);
+		}
+	}
+
 	/**
-	 * Gets a reference to pixel array.
+	 * Builds the summed-area tables of the matrix, for constant time
+	 * statistics of any rectangle.
+	 *
+	 * @return the summed-area table
+	 */
+	public SummedAreaTable createSummedAreaTable() {
+		return new SummedAreaTable(this);
+	}
+
+	/**
+	 * Gets a reference to pixel array. The matrix may be a view into a larger
+	 * array, pixel (x, y) is at {@code getOffset() + y * getRowStride() + x}.
 	 *
 	 * @return pixel array
 	 */
@@ -117,22 +240,57 @@ public class GrayscaleMatrix {
 		return this.data;
 	}
 
+	@Override
+	public int getHeight() {
+		return this.height;
+	}
+
 	/**
-	 * Gets the image height.
+	 * Gets the index of a pixel in the data array.
 	 *
-	 * @return the height
+	 * @param x
+	 *            x coordinate
+	 * @param y
+	 *            y coordinate
+	 * @return index of the pixel
 	 */
-	public int getHeight() {
-		return this.height;
+	public int getIndex(final int x, final int y) {
+		return this.offset + y * this.rowStride + x;
 	}
 
 	/**
-	 * Gets the image width.
+	 * Gets the index of the first pixel in the data array.
 	 *
-	 * @return image width
+	 * @return the offset
 	 */
+	public int getOffset() {
+		return this.offset;
+	}
+
+	/**
+	 * Gets the distance between the starts of two rows in the data array.
+	 *
+	 * @return the row stride
+	 */
+	public int getRowStride() {
+		return this.rowStride;
+	}
+
+	@Override
 	public int getWidth() {
 		return this.width;
 	}
 
+	/**
+	 * Checks whether the matrix is a view, so its pixel array holds other
+	 * pixels too. The array of a matrix that is no view holds exactly its
+	 * pixels, row by row.
+	 *
+	 * @return true if the matrix is a view
+	 */
+	public boolean isView() {
+		return this.offset != 0 || this.rowStride != this.width
+				|| this.data.length != this.width * this.height;
+	}
+
 }
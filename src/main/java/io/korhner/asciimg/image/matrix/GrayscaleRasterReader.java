@@ -0,0 +1,274 @@
+package io.korhner.asciimg.image.matrix;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+/**
+ * Reads grayscale pixels from a buffered image. For the common image types
+ * pixels are read directly from the data buffer of the raster, without
+ * converting them to an ARGB array with {@link BufferedImage#getRGB}. Other
+ * images are read row by row with getRGB.
+ *
+ * Gray levels are those of {@link GrayscaleMatrix#GrayscaleMatrix(int[], int, int)}
+ * applied to the getRGB colors, so both ways of reading give the same matrix.
+ */
+public class GrayscaleRasterReader {
+
+	/** Pixels are read with getRGB. */
+	private static final int MODE_RGB = 0;
+
+	/** Pixels are packed RGB ints. */
+	private static final int MODE_PACKED_INT = 1;
+
+	/** Pixels are interleaved red, green and blue bytes. */
+	private static final int MODE_INTERLEAVED_BYTE = 2;
+
+	/** Pixels are single bytes looked up in a gray level table. */
+	private static final int MODE_GRAY_BYTE = 3;
+
+	/**
+	 * Convert ARGB color to grayscale float, with the same weights as
+	 * {@link GrayscaleMatrix}.
+	 *
+	 * @param red
+	 *            red component
+	 * @param green
+	 *            green component
+	 * @param blue
+	 *            blue component
+	 * @return Grayscale float with value between 0.0f and 255.0f.
+	 */
+	private static float convertRGBToGrayscale(final int red, final int green,
+			final int blue) {
+		return 0.3f * red + 0.59f * green + 0.11f * blue;
+	}
+
+	/** The image. */
+	private final BufferedImage image;
+
+	/** How pixels are read. */
+	private final int mode;
+
+	/** Packed int pixels, or null. */
+	private final int[] intData;
+
+	/** Byte pixels, or null. */
+	private final byte[] byteData;
+
+	/** Index of pixel (0, 0) in the data buffer. */
+	private final int dataOffset;
+
+	/** Distance between the starts of two rows in the data buffer. */
+	private final int scanlineStride;
+
+	/** Distance between two pixels in the data buffer. */
+	private final int pixelStride;
+
+	/** Offsets of the red, green and blue bytes of a pixel. */
+	private final int[] bandOffsets;
+
+	/** Gray level of each byte value, or null. */
+	private final float[] grayLevels;
+
+	/** Row buffer for getRGB, or null. */
+	private int[] rgbRow;
+
+	/**
+	 * Instantiates a new reader of an image.
+	 *
+	 * @param image
+	 *            the image
+	 */
+	public GrayscaleRasterReader(final BufferedImage image) {
+		this.image = image;
+
+		final Raster raster = image.getRaster();
+		final DataBuffer dataBuffer = raster.getDataBuffer();
+		final int type = image.getType();
+
+		int mode = MODE_RGB;
+		int[] intData = null;
+		byte[] byteData = null;
+		int scanlineStride = 0;
+		int pixelStride = 1;
+		int[] bandOffsets = null;
+		float[] grayLevels = null;
+
+		if (dataBuffer.getNumBanks() == 1
+				&& (type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)
+				&& raster.getSampleModel() instanceof SinglePixelPackedSampleModel) {
+			mode = MODE_PACKED_INT;
+			intData = ((DataBufferInt) dataBuffer).getData();
+			scanlineStride = ((SinglePixelPackedSampleModel) raster
+					.getSampleModel()).getScanlineStride();
+		} else if (dataBuffer.getNumBanks() == 1
+				&& (type == BufferedImage.TYPE_3BYTE_BGR
+						|| type == BufferedImage.TYPE_4BYTE_ABGR || type == BufferedImage.TYPE_BYTE_GRAY)
+				&& raster.getSampleModel() instanceof ComponentSampleModel) {
+			ComponentSampleModel sampleModel = (ComponentSampleModel) raster
+					.getSampleModel();
+			byteData = ((DataBufferByte) dataBuffer).getData();
+			scanlineStride = sampleModel.getScanlineStride();
+			pixelStride = sampleModel.getPixelStride();
+			bandOffsets = sampleModel.getBandOffsets();
+
+			if (type == BufferedImage.TYPE_BYTE_GRAY) {
+				// the gray color space is linear, so the gray levels of
+				// getRGB are not the byte values
+				mode = MODE_GRAY_BYTE;
+				ColorModel colorModel = image.getColorModel();
+				grayLevels = new float[256];
+				for (int i = 0; i < grayLevels.length; i++) {
+					int rgb = colorModel.getRGB(new byte[] { (byte) i });
+					grayLevels[i] = convertRGBToGrayscale((rgb >> 16) & 0xFF,
+							(rgb >> 8) & 0xFF, rgb & 0xFF);
+				}
+			} else {
+				mode = MODE_INTERLEAVED_BYTE;
+			}
+		}
+
+		this.mode = mode;
+		this.intData = intData;
+		this.byteData = byteData;
+		this.scanlineStride = scanlineStride;
+		this.pixelStride = pixelStride;
+		this.bandOffsets = bandOffsets;
+		this.grayLevels = grayLevels;
+
+		// rasters of sub images start inside the data buffer
+		this.dataOffset = dataBuffer.getOffset()
+				- raster.getSampleModelTranslateY() * scanlineStride
+				- raster.getSampleModelTranslateX() * pixelStride;
+	}
+
+	/**
+	 * Gets the image.
+	 *
+	 * @return the image
+	 */
+	public BufferedImage getImage() {
+		return this.image;
+	}
+
+	/**
+	 * Checks whether pixels are read directly from the data buffer.
+	 *
+	 * @return false if pixels are read with getRGB
+	 */
+	public boolean isDirect() {
+		return this.mode != MODE_RGB;
+	}
+
+	/**
+	 * Reads the top left region of the image to an 8-bit matrix.
+	 *
+	 * @param width
+	 *            region width
+	 * @param height
+	 *            region height
+	 * @return 8-bit matrix of the region
+	 */
+	public ByteGrayscaleMatrix readByteMatrix(final int width, final int height) {
+		ByteGrayscaleMatrix matrix = new ByteGrayscaleMatrix(width, height);
+		byte[] data = matrix.getData();
+		float[] row = new float[width];
+
+		for (int y = 0; y < height; y++) {
+			readRow(y, width, row, 0);
+			int rowStart = matrix.getIndex(0, y);
+			for (int x = 0; x < width; x++) {
+				data[rowStart + x] = (byte) Math.round(row[x]);
+			}
+		}
+
+		return matrix;
+	}
+
+	/**
+	 * Reads the top left region of the image to a matrix.
+	 *
+	 * @param width
+	 *            region width
+	 * @param height
+	 *            region height
+	 * @return matrix of the region
+	 */
+	public GrayscaleMatrix readMatrix(final int width, final int height) {
+		GrayscaleMatrix matrix = new GrayscaleMatrix(width, height);
+
+		for (int y = 0; y < height; y++) {
+			readRow(y, width, matrix.getData(), matrix.getIndex(0, y));
+		}
+
+		return matrix;
+	}
+
+	/**
+	 * Reads the gray levels of the first pixels of an image row.
+	 *
+	 * @param y
+	 *            row index
+	 * @param width
+	 *            number of pixels to read
+	 * @param destination
+	 *            array to store the gray levels to
+	 * @param destinationOffset
+	 *            index of the first gray level in the destination
+	 */
+	public void readRow(final int y, final int width,
+			final float[] destination, final int destinationOffset) {
+		if (y < 0 || y >= this.image.getHeight() || width < 0
+				|| width > this.image.getWidth()) {
+			throw new IllegalArgumentException("Illegal row region!");
+		}
+
+		final int rowStart = this.dataOffset + y * this.scanlineStride;
+
+		switch (this.mode) {
+		case MODE_PACKED_INT:
+			for (int x = 0; x < width; x++) {
+				int rgb = this.intData[rowStart + x];
+				destination[destinationOffset + x] = convertRGBToGrayscale(
+						(rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+			}
+			break;
+		case MODE_INTERLEAVED_BYTE:
+			final int redOffset = rowStart + this.bandOffsets[0];
+			final int greenOffset = rowStart + this.bandOffsets[1];
+			final int blueOffset = rowStart + this.bandOffsets[2];
+			for (int x = 0; x < width; x++) {
+				int pixel = x * this.pixelStride;
+				destination[destinationOffset + x] = convertRGBToGrayscale(
+						this.byteData[redOffset + pixel] & 0xFF,
+						this.byteData[greenOffset + pixel] & 0xFF,
+						this.byteData[blueOffset + pixel] & 0xFF);
+			}
+			break;
+		case MODE_GRAY_BYTE:
+			final int grayOffset = rowStart + this.bandOffsets[0];
+			for (int x = 0; x < width; x++) {
+				destination[destinationOffset + x] = this.grayLevels[this.byteData[grayOffset
+						+ x * this.pixelStride] & 0xFF];
+			}
+			break;
+		default:
+			if (this.rgbRow == null || this.rgbRow.length < width) {
+				this.rgbRow = new int[width];
+			}
+			this.image.getRGB(0, y, width, 1, this.rgbRow, 0, width);
+			for (int x = 0; x < width; x++) {
+				int rgb = this.rgbRow[x];
+				destination[destinationOffset + x] = convertRGBToGrayscale(
+						(rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+			}
+			break;
+		}
+	}
+}
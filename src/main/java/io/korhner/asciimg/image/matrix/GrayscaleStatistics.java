@@ -0,0 +1,165 @@
+package io.korhner.asciimg.image.matrix;
+
+/**
+ * First and second order statistics of grayscale pixel data. Used by
+ * character fit strategies to avoid recalculating the same sums for every
+ * character and tile pair.
+ */
+public class GrayscaleStatistics {
+
+	/**
+	 * Calculates statistics of a matrix.
+	 *
+	 * @param matrix
+	 *            the matrix
+	 * @return matrix statistics
+	 */
+	public static GrayscaleStatistics calculate(final GrayscaleMatrix matrix) {
+		final float[] data = matrix.getData();
+
+		// accumulate in double to avoid cancellation in the variance
+		double sum = 0;
+		double sumOfSquares = 0;
+		for (int y = 0; y < matrix.getHeight(); y++) {
+			int rowStart = matrix.getIndex(0, y);
+			for (int i = rowStart; i < rowStart + matrix.getWidth(); i++) {
+				sum += data[i];
+				sumOfSquares += data[i] * data[i];
+			}
+		}
+
+		return new GrayscaleStatistics(matrix.getWidth() * matrix.getHeight(),
+				sum, sumOfSquares);
+	}
+
+	/**
+	 * Calculates statistics of a range of pixel data.
+	 *
+	 * @param data
+	 *            pixel data
+	 * @param offset
+	 *            index of the first pixel
+	 * @param length
+	 *            number of pixels
+	 * @return statistics of the pixel range
+	 */
+	public static GrayscaleStatistics calculate(final float[] data,
+			final int offset, final int length) {
+		if (length <= 0) {
+			throw new IllegalArgumentException("Illegal pixel count!");
+		}
+
+		// accumulate in double to avoid cancellation in the variance
+		double sum = 0;
+		double sumOfSquares = 0;
+		for (int i = offset; i < offset + length; i++) {
+			sum += data[i];
+			sumOfSquares += data[i] * data[i];
+		}
+
+		return new GrayscaleStatistics(length, sum, sumOfSquares);
+	}
+
+	/**
+	 * Calculates the mean pixel value of a matrix, without the second order
+	 * statistics.
+	 *
+	 * @param matrix
+	 *            the matrix
+	 * @return the mean pixel value
+	 */
+	public static float calculateMean(final GrayscaleMatrix matrix) {
+		final float[] data = matrix.getData();
+
+		float sum = 0;
+		for (int y = 0; y < matrix.getHeight(); y++) {
+			int rowStart = matrix.getIndex(0, y);
+			for (int i = rowStart; i < rowStart + matrix.getWidth(); i++) {
+				sum += data[i];
+			}
+		}
+		return sum / (matrix.getWidth() * matrix.getHeight());
+	}
+
+	/** Number of pixels. */
+	private final int pixelCount;
+
+	/** Sum of pixel values. */
+	private final float sum;
+
+	/** Sum of squared pixel values. */
+	private final float sumOfSquares;
+
+	/** Mean pixel value. */
+	private final float mean;
+
+	/** Population variance of pixel values. */
+	private final float variance;
+
+	/**
+	 * Instantiates new statistics from pixel sums.
+	 *
+	 * @param pixelCount
+	 *            number of pixels
+	 * @param sum
+	 *            sum of pixel values
+	 * @param sumOfSquares
+	 *            sum of squared pixel values
+	 */
+	public GrayscaleStatistics(final int pixelCount, final double sum,
+			final double sumOfSquares) {
+		double mean = sum / pixelCount;
+
+		this.pixelCount = pixelCount;
+		this.sum = (float) sum;
+		this.sumOfSquares = (float) sumOfSquares;
+		this.mean = (float) mean;
+		this.variance = (float) Math.max(0, sumOfSquares / pixelCount - mean
+				* mean);
+	}
+
+	/**
+	 * Gets the mean pixel value.
+	 *
+	 * @return the mean
+	 */
+	public float getMean() {
+		return this.mean;
+	}
+
+	/**
+	 * Gets the number of pixels.
+	 *
+	 * @return the pixel count
+	 */
+	public int getPixelCount() {
+		return this.pixelCount;
+	}
+
+	/**
+	 * Gets the sum of pixel values.
+	 *
+	 * @return the sum
+	 */
+	public float getSum() {
+		return this.sum;
+	}
+
+	/**
+	 * Gets the sum of squared pixel values.
+	 *
+	 * @return the sum of squares
+	 */
+	public float getSumOfSquares() {
+		return this.sumOfSquares;
+	}
+
+	/**
+	 * Gets the population variance of pixel values.
+	 *
+	 * @return the variance
+	 */
+	public float getVariance() {
+		return this.variance;
+	}
+}
@@ -0,0 +1,45 @@
+package io.korhner.asciimg.image.matrix;
+
+/**
+ * Read access to a grayscale image, common to matrices on the Java heap and
+ * matrices in direct memory. Color values are floats with values between
+ * 0.0f and 255.0f.
+ */
+public interface ReadableGrayscaleMatrix {
+
+	/**
+	 * Copies a sub region to an array.
+	 *
+	 * @param startPixelX
+	 *            x coordinate of sub region start
+	 * @param startPixelY
+	 *            y coordinate of sub region start
+	 * @param width
+	 *            sub region width
+	 * @param height
+	 *            subregion height
+	 * @param destination
+	 *            array to copy the pixels to
+	 * @param destinationOffset
+	 *            index of the first pixel in the destination
+	 * @param destinationRowStride
+	 *            distance between the starts of two rows in the destination
+	 */
+	void copyRegion(final int startPixelX, final int startPixelY,
+			final int width, final int height, final float[] destination,
+			final int destinationOffset, final int destinationRowStride);
+
+	/**
+	 * Gets the image height.
+	 *
+	 * @return the height
+	 */
+	int getHeight();
+
+	/**
+	 * Gets the image width.
+	 *
+	 * @return image width
+	 */
+	int getWidth();
+}
@@ -0,0 +1,214 @@
+package io.korhner.asciimg.image.matrix;
+
+/**
+ * Summed-area tables (integral images) of the pixels and the squared pixels
+ * of a grayscale matrix. Once built, the sum, mean and variance of any
+ * rectangle of the matrix are calculated in constant time.
+ *
+ * Sums are kept in double, so the tables take 16 bytes per pixel.
+ */
+public class SummedAreaTable {
+
+	/** Table width, one more than the matrix width. */
+	private final int tableWidth;
+
+	/** Sums of all pixels above and left of each table position. */
+	private final double[] sums;
+
+	/** Sums of all squared pixels above and left of each table position. */
+	private final double[] sumsOfSquares;
+
+	/** Matrix width. */
+	private final int width;
+
+	/** Matrix height. */
+	private final int height;
+
+	/**
+	 * Builds the tables of a matrix.
+	 *
+	 * @param matrix
+	 *            the matrix
+	 */
+	public SummedAreaTable(final ReadableGrayscaleMatrix matrix) {
+		this.width = matrix.getWidth();
+		this.height = matrix.getHeight();
+		this.tableWidth = this.width + 1;
+		this.sums = new double[this.tableWidth * (this.height + 1)];
+		this.sumsOfSquares = new double[this.sums.length];
+
+		final float[] row = new float[this.width];
+		for (int y = 0; y < this.height; y++) {
+			matrix.copyRegion(0, y, this.width, 1, row, 0, this.width);
+			int above = y * this.tableWidth;
+			int current = above + this.tableWidth;
+
+			double rowSum = 0;
+			double rowSumOfSquares = 0;
+			for (int x = 0; x < this.width; x++) {
+				float pixel = row[x];
+				rowSum += pixel;
+				rowSumOfSquares += pixel * pixel;
+
+				this.sums[current + x + 1] = this.sums[above + x + 1] + rowSum;
+				this.sumsOfSquares[current + x + 1] = this.sumsOfSquares[above
+						+ x + 1]
+						+ rowSumOfSquares;
+			}
+		}
+	}
+
+	/**
+	 * Checks that a rectangle lies within the matrix.
+	 *
+	 * @param x
+	 *            x coordinate of the rectangle start
+	 * @param y
+	 *            y coordinate of the rectangle start
+	 * @param width
+	 *            rectangle width
+	 * @param height
+	 *            rectangle height
+	 */
+	private void checkRectangle(final int x, final int y, final int width,
+			final int height) {
+		if (width <= 0 || height <= 0 || x < 0 || y < 0
+				|| x + width > this.width || y + height > this.height) {
+			throw new IllegalArgumentException("Illegal rectangle!");
+		}
+	}
+
+	/**
+	 * Gets the height of the matrix.
+	 *
+	 * @return the height
+	 */
+	public int getHeight() {
+		return this.height;
+	}
+
+	/**
+	 * Gets the mean pixel value of a rectangle.
+	 *
+	 * @param x
+	 *            x coordinate of the rectangle start
+	 * @param y
+	 *            y coordinate of the rectangle start
+	 * @param width
+	 *            rectangle width
+	 * @param height
+	 *            rectangle height
+	 * @return the mean
+	 */
+	public float getMean(final int x, final int y, final int width,
+			final int height) {
+		return (float) (getSum(x, y, width, height) / (width * height));
+	}
+
+	/**
+	 * Gets the statistics of a rectangle.
+	 *
+	 * @param x
+	 *            x coordinate of the rectangle start
+	 * @param y
+	 *            y coordinate of the rectangle start
+	 * @param width
+	 *            rectangle width
+	 * @param height
+	 *            rectangle height
+	 * @return statistics of the rectangle
+	 */
+	public GrayscaleStatistics getStatistics(final int x, final int y,
+			final int width, final int height) {
+		return new GrayscaleStatistics(width * height, getSum(x, y, width,
+				height), getSumOfSquares(x, y, width, height));
+	}
+
+	/**
+	 * Gets the sum of pixel values of a rectangle.
+	 *
+	 * @param x
+	 *            x coordinate of the rectangle start
+	 * @param y
+	 *            y coordinate of the rectangle start
+	 * @param width
+	 *            rectangle width
+	 * @param height
+	 *            rectangle height
+	 * @return the sum
+	 */
+	public double getSum(final int x, final int y, final int width,
+			final int height) {
+		checkRectangle(x, y, width, height);
+		return sumRectangle(this.sums, x, y, width, height);
+	}
+
+	/**
+	 * Gets the sum of squared pixel values of a rectangle.
+	 *
+	 * @param x
+	 *            x coordinate of the rectangle start
+	 * @param y
+	 *            y coordinate of the rectangle start
+	 * @param width
+	 *            rectangle width
+	 * @param height
+	 *            rectangle height
+	 * @return the sum of squares
+	 */
+	public double getSumOfSquares(final int x, final int y, final int width,
+			final int height) {
+		checkRectangle(x, y, width, height);
+		return sumRectangle(this.sumsOfSquares, x, y, width, height);
+	}
+
+	/**
+	 * Gets the population variance of pixel values of a rectangle.
+	 *
+	 * @param x
+	 *            x coordinate of the rectangle start
+	 * @param y
+	 *            y coordinate of the rectangle start
+	 * @param width
+	 *            rectangle width
+	 * @param height
+	 *            rectangle height
+	 * @return the variance
+	 */
+	public float getVariance(final int x, final int y, final int width,
+			final int height) {
+		return getStatistics(x, y, width, height).getVariance();
+	}
+
+	/**
+	 * Gets the width of the matrix.
+	 *
+	 * @return the width
+	 */
+	public int getWidth() {
+		return this.width;
+	}
+
+	/**
+	 * Sums a rectangle from the four corners of a table.
+	 *
+	 * @param table
+	 *            the table
+	 * @param x
+	 *            x coordinate of the rectangle start
+	 * @param y
+	 *            y coordinate of the rectangle start
+	 * @param width
+	 *            rectangle width
+	 * @param height
+	 *            rectangle height
+	 * @return the rectangle sum
+	 */
+	private double sumRectangle(final double[] table, final int x,
+			final int y, final int width, final int height) {
+		int top = y * this.tableWidth;
+		int bottom = (y + height) * this.tableWidth;
+		return table[bottom + x + width] - table[bottom + x]
+				- table[top + x + width] + table[top + x];
+	}
+}
@@ -1,16 +1,22 @@
 package io.korhner.asciimg.image.matrix;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
+import io.korhner.asciimg.utils.ArrayUtils;
 
 /**
  * A class for for creating mutliple tiles from an input grayscale matrix.
+ * Tiles of a {@link GrayscaleMatrix} are views that share its pixels, see
+ * {@link GrayscaleMatrix#createView(GrayscaleMatrix, int, int, int, int)}.
+ * Tiles of other matrices, such as a {@link DirectGrayscaleMatrix}, are
+ * copied to small heap matrices when requested, which can be reused for many
+ * tiles, see {@link #getTile(int, GrayscaleMatrix)}.
  */
 public class TiledGrayscaleMatrix {
 
-	/** The tiles. */
-	private final List<GrayscaleMatrix> tiles;
+	/** The source matrix. */
+	private final ReadableGrayscaleMatrix matrix;
+
+	/** Summed-area table of the source matrix, or null. */
+	private final SummedAreaTable summedAreaTable;
 
 	/** Width of a tile. */
 	private final int tileWidth;
@@ -34,8 +40,28 @@ public class TiledGrayscaleMatrix {
 	 * @param tileHeight
 	 *            the tile height
 	 */
-	public TiledGrayscaleMatrix(final GrayscaleMatrix matrix,
+	public TiledGrayscaleMatrix(final ReadableGrayscaleMatrix matrix,
 			final int tileWidth, final int tileHeight) {
+		this(matrix, tileWidth, tileHeight, null);
+	}
+
+	/**
+	 * Instantiates a new tiled grayscale matrix that gets tile statistics from
+	 * a summed-area table of the source matrix.
+	 *
+	 * @param matrix
+	 *            the source matrix
+	 * @param tileWidth
+	 *            the tile width
+	 * @param tileHeight
+	 *            the tile height
+	 * @param summedAreaTable
+	 *            summed-area table of the source matrix, or null to calculate
+	 *            tile statistics from the tile pixels
+	 */
+	public TiledGrayscaleMatrix(final ReadableGrayscaleMatrix matrix,
+			final int tileWidth, final int tileHeight,
+			final SummedAreaTable summedAreaTable) {
 
 		if (matrix.getWidth() < tileWidth || matrix.getHeight() < tileHeight) {
 			throw new IllegalArgumentException(
@@ -46,35 +72,76 @@ public class TiledGrayscaleMatrix {
 			throw new IllegalArgumentException("Illegal tile size!");
 		}
 
+		if (summedAreaTable != null
+				&& (summedAreaTable.getWidth() != matrix.getWidth() || summedAreaTable
+						.getHeight() != matrix.getHeight())) {
+			throw new IllegalArgumentException(
+					"Summed-area table does not match the matrix!");
+		}
+
+		this.matrix = matrix;
+		this.summedAreaTable = summedAreaTable;
 		this.tileWidth = tileWidth;
 		this.tileHeight = tileHeight;
 
 		// we won't allow partial tiles
 		this.tilesX = matrix.getWidth() / tileWidth;
 		this.tilesY = matrix.getHeight() / tileHeight;
-		int roundedWidth = tilesX * tileWidth;
-		int roundedHeight = tilesY * tileHeight;
-
-		tiles = new ArrayList<GrayscaleMatrix>(roundedWidth * roundedHeight);
-
-		// create each tile as a subregion from source matrix
-		for (int i = 0; i < tilesY; i++) {
-			for (int j = 0; j < tilesX; j++) {
-				tiles.add(GrayscaleMatrix.createFromRegion(matrix, tileWidth,
-						tileHeight, this.tileWidth * j, this.tileHeight * i));
-			}
-		}
 	}
 
 	/**
-	 * Gets the tile at a specific index.
+	 * Gets the tile at a specific index. The tile is created on each call, as
+	 * a view into the source matrix if it is a {@link GrayscaleMatrix} and as
+	 * a copy otherwise.
 	 *
 	 * @param index
 	 *            tile index
 	 * @return the tile
 	 */
 	public GrayscaleMatrix getTile(final int index) {
-		return this.tiles.get(index);
+		return getTile(index, null);
+	}
+
+	/**
+	 * Gets the tile at a specific index, as a view into the source matrix if
+	 * it is a {@link GrayscaleMatrix} and as a copy otherwise. A copy is made
+	 * into the given buffer, so a single buffer can be reused for all tiles
+	 * that are matched one after another.
+	 *
+	 * @param index
+	 *            tile index
+	 * @param buffer
+	 *            matrix of the tile size the pixels are copied to, or null to
+	 *            copy them to a new matrix
+	 * @return the tile, either a view or the buffer
+	 */
+	public GrayscaleMatrix getTile(final int index, final GrayscaleMatrix buffer) {
+		if (index < 0 || index >= getTileCount()) {
+			throw new IndexOutOfBoundsException("Illegal tile index!");
+		}
+
+		int startPixelX = ArrayUtils.convert1DtoX(index, this.tilesX)
+				* this.tileWidth;
+		int startPixelY = ArrayUtils.convert1DtoY(index, this.tilesX)
+				* this.tileHeight;
+
+		if (this.matrix instanceof GrayscaleMatrix) {
+			return GrayscaleMatrix.createView((GrayscaleMatrix) this.matrix,
+					this.tileWidth, this.tileHeight, startPixelX, startPixelY);
+		}
+
+		GrayscaleMatrix tile = buffer;
+		if (tile == null) {
+			tile = new GrayscaleMatrix(this.tileWidth, this.tileHeight);
+		} else if (tile.getWidth() != this.tileWidth
+				|| tile.getHeight() != this.tileHeight) {
+			throw new IllegalArgumentException("Illegal tile buffer size!");
+		}
+
+		this.matrix.copyRegion(startPixelX, startPixelY, this.tileWidth,
+				this.tileHeight, tile.getData(), tile.getOffset(),
+				tile.getRowStride());
+		return tile;
 	}
 
 	/**
@@ -83,7 +150,39 @@ public class TiledGrayscaleMatrix {
 	 * @return the number of tiles
 	 */
 	public int getTileCount() {
-		return this.tiles.size();
+		return this.tilesX * this.tilesY;
+	}
+
+	/**
+	 * Gets the statistics of the tile at a specific index. They are read from
+	 * the summed-area table in constant time if one was given.
+	 *
+	 * @param index
+	 *            tile index
+	 * @return the tile statistics
+	 */
+	public GrayscaleStatistics getTileStatistics(final int index) {
+		if (this.summedAreaTable == null) {
+			return GrayscaleStatistics.calculate(getTile(index));
+		}
+
+		if (index < 0 || index >= getTileCount()) {
+			throw new IndexOutOfBoundsException("Illegal tile index!");
+		}
+
+		return this.summedAreaTable.getStatistics(
+				ArrayUtils.convert1DtoX(index, this.tilesX) * this.tileWidth,
+				ArrayUtils.convert1DtoY(index, this.tilesX) * this.tileHeight,
+				this.tileWidth, this.tileHeight);
+	}
+
+	/**
+	 * Gets the summed-area table of the source matrix.
+	 *
+	 * @return the summed-area table, or null
+	 */
+	public SummedAreaTable getSummedAreaTable() {
+		return this.summedAreaTable;
 	}
 
 	/**
@@ -0,0 +1,69 @@
+package io.korhner.asciimg.utils;
+
+/**
+ * Range kernels that {@link FloatKernels} delegates to when an implementation
+ * other than its scalar loops is available at runtime.
+ */
+interface FloatKernelImplementation {
+
+	/**
+	 * Calculates the dot product of two float array ranges.
+	 *
+	 * @param a
+	 *            first array
+	 * @param aOffset
+	 *            start index in the first array
+	 * @param b
+	 *            second array
+	 * @param bOffset
+	 *            start index in the second array
+	 * @param length
+	 *            number of elements
+	 * @return sum of products of corresponding elements
+	 */
+	float dotProduct(float[] a, int aOffset, float[] b, int bOffset,
+			int length);
+
+	/**
+	 * Calculates the squared euclidean distance of two float array ranges.
+	 *
+	 * @param a
+	 *            first array
+	 * @param aOffset
+	 *            start index in the first array
+	 * @param b
+	 *            second array
+	 * @param bOffset
+	 *            start index in the second array
+	 * @param length
+	 *            number of elements
+	 * @return sum of squared differences of corresponding elements
+	 */
+	float squaredDistance(float[] a, int aOffset, float[] b, int bOffset,
+			int length);
+
+	/**
+	 * Adds the per pixel structural similarity scores of two float array
+	 * ranges to a running sum.
+	 *
+	 * @param sum
+	 *            the running sum
+	 * @param a
+	 *            first array
+	 * @param aOffset
+	 *            start index in the first array
+	 * @param b
+	 *            second array
+	 * @param bOffset
+	 *            start index in the second array
+	 * @param length
+	 *            number of elements
+	 * @param c1
+	 *            luminance stabilizing constant
+	 * @param c2
+	 *            contrast stabilizing constant
+	 * @return the running sum plus the scores of corresponding elements
+	 */
+	float structuralSimilarity(float sum, float[] a, int aOffset, float[] b,
+			int bOffset, int length, float c1, float c2);
+}
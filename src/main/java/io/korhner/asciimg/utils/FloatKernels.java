@@ -0,0 +1,330 @@
+package io.korhner.asciimg.utils;
+
+/**
+ * Float array kernels used in the character matching loop.
+ * 
+ * Two implementations exist. The scalar loops in this class are kept in the
+ * simple counted form the JIT compiler unrolls and removes range checks from.
+ * Their sums are accumulated sequentially, so results are exactly those of a
+ * plain loop over the same range. When the library is built on JDK 16 or
+ * later and run with {@code --add-modules jdk.incubator.vector}, the range
+ * kernels instead use the Vector API, which is probed for once when this
+ * class is loaded. Set the system property {@value #SCALAR_PROPERTY} to true
+ * to keep the scalar loops regardless.
+ * 
+ * The vector kernels sum lane by lane and then across lanes, and use fused
+ * multiply-add in the dot product and squared distance. Each per pixel term
+ * is the same, only the order and rounding of the sum differ, so a vector sum
+ * of n terms differs from the scalar sum by at most about
+ * 2 * n * 2^-24 times the sum of the absolute values of the terms. For a
+ * structural similarity or square error of a character tile that is well
+ * below the difference of distinct characters, but characters whose errors
+ * are within that tolerance may be ordered differently than by the scalar
+ * loops.
+ * 
+ * The strided overloads work on rectangles of row length by row count pixels,
+ * with rows of each array a row stride apart. The scalar loops accumulate
+ * into a single sum in row order, so for contiguous rectangles the results
+ * are exactly those of the plain overloads.
+ */
+public class FloatKernels {
+
+	/** System property that disables the vector kernels when true. */
+	public static final String SCALAR_PROPERTY = "io.korhner.asciimg.scalarKernels";
+
+	/** Name of the vector kernels, compiled only on JDK 16 or later. */
+	private static final String VECTOR_KERNELS_CLASS = "io.korhner.asciimg.utils.VectorFloatKernels";
+
+	/** The vector kernels, or null if the scalar loops are used. */
+	private static final FloatKernelImplementation VECTOR_KERNELS = loadVectorKernels();
+
+	/**
+	 * Loads the vector kernels if they were compiled, the Vector API module is
+	 * present and they are not disabled.
+	 *
+	 * @return the vector kernels, or null to use the scalar loops
+	 */
+	private static FloatKernelImplementation loadVectorKernels() {
+		if (Boolean.getBoolean(SCALAR_PROPERTY)) {
+			return null;
+		}
+		try {
+			FloatKernelImplementation kernels = (FloatKernelImplementation) Class
+					.forName(VECTOR_KERNELS_CLASS).getDeclaredConstructor()
+					.newInstance();
+			// run once so a missing module fails here and not in matching
+			kernels.squaredDistance(new float[1], 0, new float[1], 0, 1);
+			return kernels;
+		} catch (ReflectiveOperationException e) {
+			return null;
+		} catch (LinkageError e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Checks whether the Vector API kernels are used.
+	 *
+	 * @return true if the range kernels are vectorized, false if the scalar
+	 *         loops are used
+	 */
+	public static boolean isVectorized() {
+		return VECTOR_KERNELS != null;
+	}
+
+	/**
+	 * Calculates the dot product of two float array ranges.
+	 *
+	 * @param a
+	 *            first array
+	 * @param aOffset
+	 *            start index in the first array
+	 * @param b
+	 *            second array
+	 * @param bOffset
+	 *            start index in the second array
+	 * @param length
+	 *            number of elements
+	 * @return sum of products of corresponding elements
+	 */
+	public static float dotProduct(final float[] a, final int aOffset,
+			final float[] b, final int bOffset, final int length) {
+		if (VECTOR_KERNELS != null) {
+			return VECTOR_KERNELS.dotProduct(a, aOffset, b, bOffset, length);
+		}
+		float sum = 0;
+		for (int i = 0; i < length; i++) {
+			sum += a[aOffset + i] * b[bOffset + i];
+		}
+		return sum;
+	}
+
+	/**
+	 * Calculates the dot product of two float array rectangles.
+	 *
+	 * @param a
+	 *            first array
+	 * @param aOffset
+	 *            start index in the first array
+	 * @param aRowStride
+	 *            distance between rows in the first array
+	 * @param b
+	 *            second array
+	 * @param bOffset
+	 *            start index in the second array
+	 * @param bRowStride
+	 *            distance between rows in the second array
+	 * @param rowLength
+	 *            number of elements in a row
+	 * @param rowCount
+	 *            number of rows
+	 * @return sum of products of corresponding elements
+	 */
+	public static float dotProduct(final float[] a, final int aOffset,
+			final int aRowStride, final float[] b, final int bOffset,
+			final int bRowStride, final int rowLength, final int rowCount) {
+		float sum = 0;
+		for (int row = 0; row < rowCount; row++) {
+			final int aRow = aOffset + row * aRowStride;
+			final int bRow = bOffset + row * bRowStride;
+			if (VECTOR_KERNELS != null) {
+				sum += VECTOR_KERNELS.dotProduct(a, aRow, b, bRow, rowLength);
+				continue;
+			}
+			for (int i = 0; i < rowLength; i++) {
+				sum += a[aRow + i] * b[bRow + i];
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Calculates the sum of per pixel structural similarity scores
+	 * (2 * a * b + c1) * (2 + c2) / (a^2 + b^2 + c1) / c2 of two float array
+	 * ranges. Each score is at most (2 + c2) / c2.
+	 *
+	 * @param a
+	 *            first array
+	 * @param aOffset
+	 *            start index in the first array
+	 * @param b
+	 *            second array
+	 * @param bOffset
+	 *            start index in the second array
+	 * @param length
+	 *            number of elements
+	 * @param c1
+	 *            luminance stabilizing constant
+	 * @param c2
+	 *            contrast stabilizing constant
+	 * @return sum of scores of corresponding elements
+	 */
+	public static float structuralSimilarity(final float[] a,
+			final int aOffset, final float[] b, final int bOffset,
+			final int length, final float c1, final float c2) {
+		return structuralSimilarity(0, a, aOffset, b, bOffset, length, c1, c2);
+	}
+
+	/**
+	 * Adds the per pixel structural similarity scores of two float array
+	 * ranges to a running sum, see
+	 * {@link #structuralSimilarity(float[], int, float[], int, int, float, float)}.
+	 * The scalar loops add scores one by one, so summing a rectangle row by
+	 * row gives exactly the sum of a single pass.
+	 *
+	 * @param sum
+	 *            the running sum
+	 * @param a
+	 *            first array
+	 * @param aOffset
+	 *            start index in the first array
+	 * @param b
+	 *            second array
+	 * @param bOffset
+	 *            start index in the second array
+	 * @param length
+	 *            number of elements
+	 * @param c1
+	 *            luminance stabilizing constant
+	 * @param c2
+	 *            contrast stabilizing constant
+	 * @return the running sum plus the scores of corresponding elements
+	 */
+	public static float structuralSimilarity(final float sum,
+			final float[] a, final int aOffset, final float[] b,
+			final int bOffset, final int length, final float c1,
+			final float c2) {
+		if (VECTOR_KERNELS != null) {
+			return VECTOR_KERNELS.structuralSimilarity(sum, a, aOffset, b,
+					bOffset, length, c1, c2);
+		}
+		float total = sum;
+		for (int i = 0; i < length; i++) {
+			float pixelA = a[aOffset + i];
+			float pixelB = b[bOffset + i];
+			total += (2 * pixelA * pixelB + c1) * (2 + c2)
+					/ (pixelA * pixelA + pixelB * pixelB + c1) / c2;
+		}
+		return total;
+	}
+
+	/**
+	 * Calculates the sum of per pixel structural similarity scores of two
+	 * float array rectangles, see
+	 * {@link #structuralSimilarity(float[], int, float[], int, int, float, float)}.
+	 *
+	 * @param a
+	 *            first array
+	 * @param aOffset
+	 *            start index in the first array
+	 * @param aRowStride
+	 *            distance between rows in the first array
+	 * @param b
+	 *            second array
+	 * @param bOffset
+	 *            start index in the second array
+	 * @param bRowStride
+	 *            distance between rows in the second array
+	 * @param rowLength
+	 *            number of elements in a row
+	 * @param rowCount
+	 *            number of rows
+	 * @param c1
+	 *            luminance stabilizing constant
+	 * @param c2
+	 *            contrast stabilizing constant
+	 * @return sum of scores of corresponding elements
+	 */
+	public static float structuralSimilarity(final float[] a,
+			final int aOffset, final int aRowStride, final float[] b,
+			final int bOffset, final int bRowStride, final int rowLength,
+			final int rowCount, final float c1, final float c2) {
+		float sum = 0;
+		for (int row = 0; row < rowCount; row++) {
+			final int aRow = aOffset + row * aRowStride;
+			final int bRow = bOffset + row * bRowStride;
+			if (VECTOR_KERNELS != null) {
+				sum = VECTOR_KERNELS.structuralSimilarity(sum, a, aRow, b, bRow,
+						rowLength, c1, c2);
+				continue;
+			}
+			for (int i = 0; i < rowLength; i++) {
+				float pixelA = a[aRow + i];
+				float pixelB = b[bRow + i];
+				sum += (2 * pixelA * pixelB + c1) * (2 + c2)
+						/ (pixelA * pixelA + pixelB * pixelB + c1) / c2;
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Calculates the squared euclidean distance of two float array ranges.
+	 *
+	 * @param a
+	 *            first array
+	 * @param aOffset
+	 *            start index in the first array
+	 * @param b
+	 *            second array
+	 * @param bOffset
+	 *            start index in the second array
+	 * @param length
+	 *            number of elements
+	 * @return sum of squared differences of corresponding elements
+	 */
+	public static float squaredDistance(final float[] a, final int aOffset,
+			final float[] b, final int bOffset, final int length) {
+		if (VECTOR_KERNELS != null) {
+			return VECTOR_KERNELS.squaredDistance(a, aOffset, b, bOffset,
+					length);
+		}
+		float sum = 0;
+		for (int i = 0; i < length; i++) {
+			float difference = a[aOffset + i] - b[bOffset + i];
+			sum += difference * difference;
+		}
+		return sum;
+	}
+
+	/**
+	 * Calculates the squared euclidean distance of two float array rectangles.
+	 *
+	 * @param a
+	 *            first array
+	 * @param aOffset
+	 *            start index in the first array
+	 * @param aRowStride
+	 *            distance between rows in the first array
+	 * @param b
+	 *            second array
+	 * @param bOffset
+	 *            start index in the second array
+	 * @param bRowStride
+	 *            distance between rows in the second array
+	 * @param rowLength
+	 *            number of elements in a row
+	 * @param rowCount
+	 *            number of rows
+	 * @return sum of squared differences of corresponding elements
+	 */
+	public static float squaredDistance(final float[] a, final int aOffset,
+			final int aRowStride, final float[] b, final int bOffset,
+			final int bRowStride, final int rowLength, final int rowCount) {
+		float sum = 0;
+		for (int row = 0; row < rowCount; row++) {
+			final int aRow = aOffset + row * aRowStride;
+			final int bRow = bOffset + row * bRowStride;
+			if (VECTOR_KERNELS != null) {
+				sum += VECTOR_KERNELS.squaredDistance(a, aRow, b, bRow,
+						rowLength);
+				continue;
+			}
+			for (int i = 0; i < rowLength; i++) {
+				float difference = a[aRow + i] - b[bRow + i];
+				sum += difference * difference;
+			}
+		}
+		return sum;
+	}
+}
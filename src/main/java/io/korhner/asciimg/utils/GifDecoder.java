@@ -27,6 +27,15 @@ import java.util.List;
  *       // do something with frame
  *    }
  * </pre>
+ * Frames can also be handed to a {@link FrameHandler} as they are decoded,
+ * without keeping them all in memory:
+ * <pre>
+ *    d.read("sample.gif", new GifDecoder.FrameHandler() {
+ *       public void handleFrame(int index, BufferedImage frame, int delay) {
+ *          // do something with frame
+ *       }
+ *    });
+ * </pre>
  * No copyright asserted on the source code of this class.  May be used for
  * any purpose, however, refer to the Unisys LZW patent for any additional
  * restrictions.  Please forward any corrections to questions at fmsware.com.
@@ -79,6 +88,7 @@ public class GifDecoder {
 	protected Rectangle lastRect; // last image rect
 	protected BufferedImage image; // current frame
 	protected BufferedImage lastImage; // previous frame
+	protected BufferedImage previousImage; // frame before previous frame
 
 	protected byte[] block = new byte[256]; // current data block
 	protected int blockSize = 0; // block size
@@ -102,6 +112,7 @@ public class GifDecoder {
 
 	protected List<GifFrame> frames; // frames read from current file
 	protected int frameCount;
+	protected FrameHandler frameHandler; // receives frames instead of list
 
 	static class GifFrame {
 		public GifFrame(BufferedImage im, int del) {
@@ -112,6 +123,23 @@ public class GifDecoder {
 		public int delay;
 	}
 
+	/**
+	 * Receives frames as they are decoded, see
+	 * {@link GifDecoder#read(InputStream, FrameHandler)}.
+	 */
+	public interface FrameHandler {
+		/**
+		 * Handles a decoded frame. The frame image is not used by the
+		 * decoder after the next frame is decoded, and may be kept.
+		 *
+		 * @param index index of frame
+		 * @param frame full size frame image, composited with the previous
+		 *        frames as specified by their disposition codes
+		 * @param delay display duration of frame in milliseconds
+		 */
+		void handleFrame(int index, BufferedImage frame, int delay);
+	}
+
 	/**
 	 * Gets display duration for specified frame.
 	 *
@@ -121,7 +149,7 @@ public class GifDecoder {
 	public int getDelay(int n) {
 		//
 		delay = -1;
-		if ((n >= 0) && (n < frameCount)) {
+		if ((frames != null) && (n >= 0) && (n < frames.size())) {
 			delay = ((GifFrame) frames.get(n)).delay;
 		}
 		return delay;
@@ -165,19 +193,15 @@ public class GifDecoder {
 
 		// fill in starting image contents based on last image's dispose code
 		if (lastDispose > 0) {
+			BufferedImage startImage = lastImage;
 			if (lastDispose == 3) {
 				// use image before last
-				int n = frameCount - 2;
-				if (n > 0) {
-					lastImage = getFrame(n - 1);
-				} else {
-					lastImage = null;
-				}
+				startImage = previousImage;
 			}
 
-			if (lastImage != null) {
+			if (startImage != null) {
 				int[] prev =
-					((DataBufferInt) lastImage.getRaster().getDataBuffer()).getData();
+					((DataBufferInt) startImage.getRaster().getDataBuffer()).getData();
 				System.arraycopy(prev, 0, dest, 0, width * height);
 				// copy pixels
 
@@ -252,7 +276,7 @@ public class GifDecoder {
 	 */
 	public BufferedImage getFrame(int n) {
 		BufferedImage im = null;
-		if ((n >= 0) && (n < frameCount)) {
+		if ((frames != null) && (n >= 0) && (n < frames.size())) {
 			im = ((GifFrame) frames.get(n)).image;
 		}
 		return im;
@@ -323,6 +347,58 @@ public class GifDecoder {
 		return status;
 	}
 
+	/**
+	 * Reads GIF image from stream, handing each frame to a handler as soon as
+	 * it is decoded. Frames are not kept, so {@link #getFrame(int)} returns
+	 * null afterwards and memory use does not grow with the frame count. Only
+	 * the frames needed for disposal are kept while decoding.
+	 *
+	 * @param is InputStream containing GIF file.
+	 * @param handler FrameHandler receiving the frames
+	 * @return read status code (0 = no errors)
+	 */
+	public int read(InputStream is, FrameHandler handler) {
+		frameHandler = handler;
+		try {
+			return read(is);
+		} finally {
+			frameHandler = null;
+			closeInput();
+		}
+	}
+
+	/**
+	 * Reads GIF file from specified file/URL source, handing each frame to a
+	 * handler as soon as it is decoded.
+	 *
+	 * @param name String containing source
+	 * @param handler FrameHandler receiving the frames
+	 * @return read status code (0 = no errors)
+	 * @see #read(InputStream, FrameHandler)
+	 */
+	public int read(String name, FrameHandler handler) {
+		frameHandler = handler;
+		try {
+			return read(name);
+		} finally {
+			frameHandler = null;
+			closeInput();
+		}
+	}
+
+	/**
+	 * Closes the input stream, in case reading was aborted by a frame
+	 * handler.
+	 */
+	protected void closeInput() {
+		if (in != null) {
+			try {
+				in.close();
+			} catch (IOException e) {
+			}
+		}
+	}
+
 	/**
 	 * Reads GIF file from specified file/URL source  
 	 * (URL assumed if name contains ":/" or "file:")
@@ -497,6 +573,9 @@ public class GifDecoder {
 		frames = new ArrayList<>();
 		gct = null;
 		lct = null;
+		lastDispose = 0;
+		lastImage = null;
+		previousImage = null;
 	}
 
 	/**
@@ -707,13 +786,21 @@ public class GifDecoder {
 
 		setPixels(); // transfer pixel data to image
 
-		frames.add(new GifFrame(image, delay)); // add image to frame list
+		BufferedImage frame = image;
+		int frameDelay = delay;
+		if (frameHandler == null) {
+			frames.add(new GifFrame(image, delay)); // add image to frame list
+		}
 
 		if (transparency) {
 			act[transIndex] = save;
 		}
 		resetFrame();
 
+		if (frameHandler != null) {
+			frameHandler.handleFrame(frameCount - 1, frame, frameDelay);
+		}
+
 	}
 
 	/**
@@ -765,6 +852,7 @@ public class GifDecoder {
 	protected void resetFrame() {
 		lastDispose = dispose;
 		lastRect = new Rectangle(ix, iy, iw, ih);
+		previousImage = lastImage;
 		lastImage = image;
 		lastBgColor = bgColor;
 		lct = null;
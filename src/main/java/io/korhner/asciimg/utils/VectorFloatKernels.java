@@ -0,0 +1,89 @@
+package io.korhner.asciimg.utils;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Range kernels on the Vector API of JDK 16 and later. Whole vectors of the
+ * preferred species are processed in lanes, and the remaining elements in a
+ * scalar loop.
+ *
+ * This class is compiled only by the JDK 16+ build profile and loaded by
+ * {@link FloatKernels} through reflection, so the rest of the library still
+ * runs on Java 8. It is only used when the jdk.incubator.vector module is
+ * added at runtime.
+ */
+final class VectorFloatKernels implements FloatKernelImplementation {
+
+	/** Preferred vector species of the platform. */
+	private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+	@Override
+	public float dotProduct(final float[] a, final int aOffset,
+			final float[] b, final int bOffset, final int length) {
+		FloatVector sums = FloatVector.zero(SPECIES);
+		final int vectorLength = SPECIES.loopBound(length);
+		int i = 0;
+		for (; i < vectorLength; i += SPECIES.length()) {
+			FloatVector vectorA = FloatVector.fromArray(SPECIES, a, aOffset + i);
+			FloatVector vectorB = FloatVector.fromArray(SPECIES, b, bOffset + i);
+			sums = vectorA.fma(vectorB, sums);
+		}
+
+		float sum = sums.reduceLanes(VectorOperators.ADD);
+		for (; i < length; i++) {
+			sum += a[aOffset + i] * b[bOffset + i];
+		}
+		return sum;
+	}
+
+	@Override
+	public float squaredDistance(final float[] a, final int aOffset,
+			final float[] b, final int bOffset, final int length) {
+		FloatVector sums = FloatVector.zero(SPECIES);
+		final int vectorLength = SPECIES.loopBound(length);
+		int i = 0;
+		for (; i < vectorLength; i += SPECIES.length()) {
+			FloatVector difference = FloatVector.fromArray(SPECIES, a,
+					aOffset + i).sub(
+					FloatVector.fromArray(SPECIES, b, bOffset + i));
+			sums = difference.fma(difference, sums);
+		}
+
+		float sum = sums.reduceLanes(VectorOperators.ADD);
+		for (; i < length; i++) {
+			float difference = a[aOffset + i] - b[bOffset + i];
+			sum += difference * difference;
+		}
+		return sum;
+	}
+
+	@Override
+	public float structuralSimilarity(final float sum, final float[] a,
+			final int aOffset, final float[] b, final int bOffset,
+			final int length, final float c1, final float c2) {
+		final float scale = 2 + c2;
+		FloatVector sums = FloatVector.zero(SPECIES);
+		final int vectorLength = SPECIES.loopBound(length);
+		int i = 0;
+		for (; i < vectorLength; i += SPECIES.length()) {
+			FloatVector vectorA = FloatVector.fromArray(SPECIES, a, aOffset + i);
+			FloatVector vectorB = FloatVector.fromArray(SPECIES, b, bOffset + i);
+			FloatVector numerator = vectorA.mul(2).mul(vectorB).add(c1)
+					.mul(scale);
+			FloatVector denominator = vectorA.mul(vectorA)
+					.add(vectorB.mul(vectorB)).add(c1);
+			sums = sums.add(numerator.div(denominator).div(c2));
+		}
+
+		float total = sum + sums.reduceLanes(VectorOperators.ADD);
+		for (; i < length; i++) {
+			float pixelA = a[aOffset + i];
+			float pixelB = b[bOffset + i];
+			total += (2 * pixelA * pixelB + c1) * scale
+					/ (pixelA * pixelA + pixelB * pixelB + c1) / c2;
+		}
+		return total;
+	}
+}
@@ -0,0 +1,143 @@
+package io.korhner.asciimg;
+
+import io.korhner.asciimg.image.AsciiImgCache;
+import io.korhner.asciimg.image.character_fit_strategy.BestCharacterFitStrategy;
+import io.korhner.asciimg.image.character_fit_strategy.ColorSquareErrorFitStrategy;
+import io.korhner.asciimg.image.character_fit_strategy.StructuralSimilarityFitStrategy;
+import io.korhner.asciimg.image.character_fit_strategy.StructuralSimilarityIndexFitStrategy;
+import io.korhner.asciimg.image.converter.AsciiToStringConverter;
+import io.korhner.asciimg.image.converter.ConversionWorkspace;
+import io.korhner.asciimg.image.converter.ConverterSettings;
+import io.korhner.asciimg.image.converter.TileMatchCache;
+import io.korhner.asciimg.image.matrix.DirectGrayscaleMatrixPool;
+
+import java.awt.Font;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Checks that a single converter shared by many threads gives every thread
+ * the same ascii art as a sequential conversion. Threads convert images of
+ * different sizes at once, with and without workspaces, through a converter
+ * that matches in parallel and shares its matrix pool and either an exact
+ * tile match cache or a summed-area table. Quantized caches are lossy, see
+ * {@link TileMatchCacheCheck} for their thread safety.
+ */
+public class ConcurrentConversionCheck {
+
+	/** Number of threads sharing the converter. */
+	private static final int THREAD_COUNT = 8;
+
+	/** Number of conversions made by each thread. */
+	private static final int CONVERSIONS_PER_THREAD = 8;
+
+	public static void main(String[] args) throws IOException,
+			InterruptedException, ExecutionException {
+		AsciiImgCache cache = AsciiImgCache.create(new Font("Courier",
+				Font.PLAIN, 10));
+		BufferedImage portraitImage = ImageIO.read(new File(
+				"examples/portrait.png"));
+		BufferedImage[] images = new BufferedImage[] { portraitImage,
+				portraitImage.getSubimage(13, 7, 400, 500) };
+
+		ExecutorService threads = Executors.newFixedThreadPool(THREAD_COUNT);
+		ExecutorService matchingExecutor = Executors.newFixedThreadPool(4);
+		boolean failed = false;
+		try {
+			for (BestCharacterFitStrategy strategy : new BestCharacterFitStrategy[] {
+					new ColorSquareErrorFitStrategy(),
+					new StructuralSimilarityFitStrategy(),
+					new StructuralSimilarityIndexFitStrategy() }) {
+				for (ConverterSettings settings : new ConverterSettings[] {
+						new ConverterSettings.Builder().setTileMatchCache(
+								new TileMatchCache(
+										TileMatchCache.DEFAULT_CAPACITY,
+										TileMatchCache.EXACT)).build(),
+						new ConverterSettings.Builder()
+								.setSummedAreaTableEnabled(true).build() }) {
+					failed |= checkSharedConverter(cache, strategy, settings,
+							threads, matchingExecutor, images);
+				}
+			}
+		} finally {
+			threads.shutdown();
+			matchingExecutor.shutdown();
+		}
+
+		if (failed) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Converts images on many threads through a shared parallel converter and
+	 * compares them to sequential conversions without a tile match cache.
+	 *
+	 * @return true if any conversion differs
+	 */
+	private static boolean checkSharedConverter(AsciiImgCache cache,
+			BestCharacterFitStrategy strategy, ConverterSettings settings,
+			ExecutorService threads, ExecutorService matchingExecutor,
+			final BufferedImage[] images) throws InterruptedException,
+			ExecutionException {
+		// expected output, converted sequentially
+		final String[] expected = new String[images.length];
+		AsciiToStringConverter sequentialConverter = new AsciiToStringConverter(
+				cache, strategy, new ConverterSettings.Builder(settings)
+						.setTileMatchCache(null).build());
+		for (int i = 0; i < images.length; i++) {
+			expected[i] = sequentialConverter.convertImage(images[i])
+					.toString();
+		}
+
+		final AsciiToStringConverter sharedConverter = new AsciiToStringConverter(
+				cache, strategy, new ConverterSettings.Builder(settings)
+						.setExecutorService(matchingExecutor)
+						.setParallelChunkSize(64)
+						.setMatrixPool(new DirectGrayscaleMatrixPool()).build());
+
+		List<Future<Integer>> results = new ArrayList<>();
+		for (int t = 0; t < THREAD_COUNT; t++) {
+			final int thread = t;
+			results.add(threads.submit(new Callable<Integer>() {
+				@Override
+				public Integer call() {
+					ConversionWorkspace workspace = new ConversionWorkspace();
+					int mismatches = 0;
+					for (int c = 0; c < CONVERSIONS_PER_THREAD; c++) {
+						int image = (thread + c) % images.length;
+						String actual = (c % 2 == 0 ? sharedConverter
+								.convertImage(images[image], workspace)
+								: sharedConverter.convertImage(images[image]))
+								.toString();
+						if (!expected[image].equals(actual)) {
+							mismatches++;
+						}
+					}
+					return mismatches;
+				}
+			}));
+		}
+
+		int mismatches = 0;
+		for (Future<Integer> result : results) {
+			mismatches += result.get();
+		}
+		System.out.println(strategy.getClass().getSimpleName()
+				+ (settings.getTileMatchCache() != null ? " with exact cache"
+						: " with summed-area table") + ": " + mismatches
+				+ " of " + THREAD_COUNT * CONVERSIONS_PER_THREAD
+				+ " conversions differ.");
+		return mismatches > 0;
+	}
+}
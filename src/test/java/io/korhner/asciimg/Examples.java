@@ -35,44 +35,43 @@ public class Examples {
 		BestCharacterFitStrategy ssimStrategy = new StructuralSimilarityFitStrategy();
 
 		// initialize converters
-		AsciiToImageConverter imageConverter = new AsciiToImageConverter(
-				smallFontCache, squareErrorStrategy);
+		AsciiToImageConverter imageConverter;
 		AsciiToStringConverter stringConverter = new AsciiToStringConverter(
 				largeFontCache, ssimStrategy);
 
 		// small font images, square error
-		imageConverter.setCharacterCache(smallFontCache);
-		imageConverter.setCharacterFitStrategy(squareErrorStrategy);
+		imageConverter = new AsciiToImageConverter(smallFontCache,
+				squareErrorStrategy);
 		ImageIO.write(imageConverter.convertImage(portraitImage), "png",
 				new File("examples/portrait_small_square_error.png"));
 
 		// medium font images, square error
-		imageConverter.setCharacterCache(mediumBlackAndWhiteCache);
-		imageConverter.setCharacterFitStrategy(squareErrorStrategy);
+		imageConverter = new AsciiToImageConverter(mediumBlackAndWhiteCache,
+				squareErrorStrategy);
 		ImageIO.write(imageConverter.convertImage(portraitImage), "png",
 				new File("examples/portrait_medium_square_error.png"));
 
 		// large font images, square error
-		imageConverter.setCharacterCache(largeFontCache);
-		imageConverter.setCharacterFitStrategy(squareErrorStrategy);
+		imageConverter = new AsciiToImageConverter(largeFontCache,
+				squareErrorStrategy);
 		ImageIO.write(imageConverter.convertImage(portraitImage), "png",
 				new File("examples/portrait_large_square_error.png"));
 
 		// small font images, ssim
-		imageConverter.setCharacterCache(smallFontCache);
-		imageConverter.setCharacterFitStrategy(ssimStrategy);
+		imageConverter = new AsciiToImageConverter(smallFontCache,
+				ssimStrategy);
 		ImageIO.write(imageConverter.convertImage(portraitImage), "png",
 				new File("examples/portrait_small_ssim.png"));
 
 		// medium font images, ssim error
-		imageConverter.setCharacterCache(mediumBlackAndWhiteCache);
-		imageConverter.setCharacterFitStrategy(ssimStrategy);
+		imageConverter = new AsciiToImageConverter(mediumBlackAndWhiteCache,
+				ssimStrategy);
 		ImageIO.write(imageConverter.convertImage(portraitImage), "png",
 				new File("examples/portrait_medium_ssim.png"));
 
 		// large font images, ssim
-		imageConverter.setCharacterCache(largeFontCache);
-		imageConverter.setCharacterFitStrategy(ssimStrategy);
+		imageConverter = new AsciiToImageConverter(largeFontCache,
+				ssimStrategy);
 		ImageIO.write(imageConverter.convertImage(portraitImage), "png",
 				new File("examples/portrait_large_ssim.png"));
 
@@ -0,0 +1,55 @@
+package io.korhner.asciimg;
+
+import io.korhner.asciimg.image.AsciiImgCache;
+import io.korhner.asciimg.image.character_fit_strategy.BestCharacterFitStrategy;
+import io.korhner.asciimg.image.character_fit_strategy.ColorSquareErrorFitStrategy;
+import io.korhner.asciimg.image.converter.AsciiToStringConverter;
+import io.korhner.asciimg.image.matrix.GrayscaleMatrix;
+
+import java.awt.Font;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Checks that a strategy implementing only the single pair error, reading the
+ * pixel arrays of both matrices as is, still converts an image exactly like
+ * the built in strategy with the same error.
+ */
+public class LegacyStrategyCheck {
+
+	public static void main(String[] args) throws IOException {
+		AsciiImgCache cache = AsciiImgCache.create(new Font("Courier",
+				Font.PLAIN, 10));
+		BufferedImage portraitImage = ImageIO.read(new File(
+				"examples/portrait.png"));
+
+		// square error as written before matrices could be views
+		BestCharacterFitStrategy legacyStrategy = new BestCharacterFitStrategy() {
+			@Override
+			public float calculateError(final GrayscaleMatrix character,
+					final GrayscaleMatrix tile) {
+				float error = 0;
+				for (int i = 0; i < character.getData().length; i++) {
+					error += (character.getData()[i] - tile.getData()[i])
+							* (character.getData()[i] - tile.getData()[i]);
+				}
+				return error / character.getData().length;
+			}
+		};
+
+		String expected = new AsciiToStringConverter(cache,
+				new ColorSquareErrorFitStrategy()).convertImage(portraitImage)
+				.toString();
+		String actual = new AsciiToStringConverter(cache, legacyStrategy)
+				.convertImage(portraitImage).toString();
+
+		if (!expected.equals(actual)) {
+			System.out.println("Legacy strategy output differs!");
+			System.exit(1);
+		}
+		System.out.println("Legacy strategy output unchanged.");
+	}
+}
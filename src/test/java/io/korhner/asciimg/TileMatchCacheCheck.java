@@ -0,0 +1,125 @@
+package io.korhner.asciimg;
+
+import io.korhner.asciimg.image.AsciiImgCache;
+import io.korhner.asciimg.image.character_fit_strategy.ColorSquareErrorFitStrategy;
+import io.korhner.asciimg.image.converter.AsciiToStringConverter;
+import io.korhner.asciimg.image.converter.ConverterSettings;
+import io.korhner.asciimg.image.converter.TileMatchCache;
+
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Checks that a small, quantized tile match cache shared by many threads
+ * stays consistent. A quantized cache is lossy, so the ascii art depends on
+ * the order tiles are matched in and is not compared. Instead the check makes
+ * sure no conversion fails, every lookup is counted as a hit or a miss, the
+ * capacity is respected and no more entries are evicted than were added.
+ */
+public class TileMatchCacheCheck {
+
+	/** Number of threads sharing the cache. */
+	private static final int THREAD_COUNT = 8;
+
+	/** Number of conversions made by each thread. */
+	private static final int CONVERSIONS_PER_THREAD = 8;
+
+	/** Capacity of the cache, small enough to evict while converting. */
+	private static final int CAPACITY = 64;
+
+	public static void main(String[] args) throws IOException,
+			InterruptedException {
+		AsciiImgCache cache = AsciiImgCache.create(new Font("Courier",
+				Font.PLAIN, 10));
+		BufferedImage portraitImage = ImageIO.read(new File(
+				"examples/portrait.png"));
+		final BufferedImage[] images = new BufferedImage[] { portraitImage,
+				portraitImage.getSubimage(13, 7, 400, 500) };
+
+		TileMatchCache tileMatchCache = new TileMatchCache(CAPACITY, 4f);
+		final AsciiToStringConverter converter = new AsciiToStringConverter(
+				cache, new ColorSquareErrorFitStrategy(),
+				new ConverterSettings.Builder().setTileMatchCache(
+						tileMatchCache).build());
+
+		// every tile of a conversion is looked up once
+		Dimension tileSize = cache.getCharacterImageSize();
+		long lookups = 0;
+		for (int t = 0; t < THREAD_COUNT; t++) {
+			for (int c = 0; c < CONVERSIONS_PER_THREAD; c++) {
+				BufferedImage image = images[(t + c) % images.length];
+				lookups += (image.getWidth() / tileSize.width)
+						* (image.getHeight() / tileSize.height);
+			}
+		}
+
+		ExecutorService threads = Executors.newFixedThreadPool(THREAD_COUNT);
+		int failures = 0;
+		try {
+			List<Future<Void>> results = new ArrayList<>();
+			for (int t = 0; t < THREAD_COUNT; t++) {
+				final int thread = t;
+				results.add(threads.submit(new Callable<Void>() {
+					@Override
+					public Void call() {
+						for (int c = 0; c < CONVERSIONS_PER_THREAD; c++) {
+							converter.convertImage(images[(thread + c)
+									% images.length]);
+						}
+						return null;
+					}
+				}));
+			}
+
+			for (Future<Void> result : results) {
+				try {
+					result.get();
+				} catch (ExecutionException e) {
+					e.getCause().printStackTrace();
+					failures++;
+				}
+			}
+		} finally {
+			threads.shutdown();
+		}
+
+		long hits = tileMatchCache.getHitCount();
+		long misses = tileMatchCache.getMissCount();
+		long evictions = tileMatchCache.getEvictionCount();
+		int size = tileMatchCache.size();
+		System.out.println("Tile match cache: " + hits + " hits, " + misses
+				+ " misses, " + evictions + " evictions, " + size
+				+ " entries, " + failures + " failed threads.");
+
+		boolean failed = failures > 0;
+		if (hits + misses != lookups) {
+			System.out.println("Expected " + lookups + " lookups!");
+			failed = true;
+		}
+		if (size > CAPACITY) {
+			System.out.println("Capacity exceeded!");
+			failed = true;
+		}
+		// every miss adds at most one entry
+		if (size + evictions > misses) {
+			System.out.println("More entries than misses!");
+			failed = true;
+		}
+
+		if (failed) {
+			System.exit(1);
+		}
+	}
+}